@@ -0,0 +1,147 @@
+package core;
+
+import dp.State;
+import dp.StateCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snapshot of a search from which it can be resumed : the incumbent solution, the nodes of the frontier,
+ * including the ones being explored, and the statistics of the search.
+ * The nodes are written with {@code State.encode}, the file being replaced atomically so that
+ * an interrupted write leaves the previous checkpoint intact.
+ *
+ * @author Vianney Coppé
+ */
+final class Checkpoint {
+
+    private static final int MAGIC = 0x4D444443;
+
+    final State incumbent;
+    final List<State> nodes;
+    final List<ByteBuffer> spilled;
+    long explored;
+    long pruned;
+    long elapsed;
+
+    /**
+     * @param incumbent the best solution found or {@code null}
+     * @param nodes     the compact nodes left to explore
+     * @param spilled   the records of the nodes left to explore that were spilled to disk
+     */
+    Checkpoint(State incumbent, List<State> nodes, List<ByteBuffer> spilled) {
+        this.incumbent = incumbent;
+        this.nodes = nodes;
+        this.spilled = spilled;
+    }
+
+    /**
+     * @return the number of nodes left to explore
+     */
+    int size() {
+        return this.nodes.size() + this.spilled.size();
+    }
+
+    /**
+     * Writes the checkpoint to a file, replacing the previous one.
+     *
+     * @param file       the checkpoint file
+     * @param codec      the codec of the problem
+     * @param nVariables the number of variables of the problem
+     * @throws IOException if the file cannot be written
+     */
+    void write(File file, StateCodec codec, int nVariables) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(nVariables);
+            out.writeLong(this.explored);
+            out.writeLong(this.pruned);
+            out.writeLong(this.elapsed);
+
+            if (this.incumbent == null) {
+                out.writeInt(-1);
+            } else {
+                write(out, this.incumbent.encode(codec));
+            }
+
+            out.writeInt(this.size());
+            for (State node : this.nodes) {
+                write(out, node.encode(codec));
+            }
+            for (ByteBuffer record : this.spilled) {
+                byte[] bytes = new byte[record.getInt()];
+                record.get(bytes);
+                write(out, bytes);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a checkpoint written by {@code write}.
+     * The incumbent and the nodes are compact, {@code expand} should be called before using them.
+     *
+     * @param file       the checkpoint file
+     * @param root       the root of the problem
+     * @param nVariables the number of variables of the problem
+     * @return the checkpoint
+     * @throws IOException if the file cannot be read or was not written for this problem
+     */
+    static Checkpoint read(File file, State root, int nVariables) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a checkpoint");
+            }
+            if (in.readInt() != nVariables) {
+                throw new IOException(file + " is a checkpoint of another problem");
+            }
+            long explored = in.readLong();
+            long pruned = in.readLong();
+            long elapsed = in.readLong();
+
+            byte[] bytes = read(in);
+            State incumbent = bytes == null ? null : State.decode(bytes, root);
+
+            int size = in.readInt();
+            List<State> nodes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                nodes.add(State.decode(read(in), root));
+            }
+
+            Checkpoint checkpoint = new Checkpoint(incumbent, nodes, Collections.emptyList());
+            checkpoint.explored = explored;
+            checkpoint.pruned = pruned;
+            checkpoint.elapsed = elapsed;
+            return checkpoint;
+        }
+    }
+
+    private static void write(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] read(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
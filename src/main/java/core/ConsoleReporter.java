@@ -0,0 +1,58 @@
+package core;
+
+/**
+ * Listener printing the progress of a search on the standard output, at most once per interval :
+ * the events received in between are summarized by the next line printed.
+ * Each line gives the incumbent, the upper bound and the gap proven between them.
+ *
+ * @author Vianney Coppé
+ */
+public class ConsoleReporter implements SolverListener {
+
+    private final long interval;
+    private long lastPrint;
+    private double lowerBound;
+    private double upperBound;
+    private boolean pending;
+
+    /**
+     * @param interval the minimum time between two lines in milliseconds
+     */
+    public ConsoleReporter(long interval) {
+        this.interval = interval;
+        this.lastPrint = Long.MIN_VALUE;
+        this.lowerBound = -Double.MAX_VALUE;
+        this.upperBound = Double.POSITIVE_INFINITY;
+        this.pending = false;
+    }
+
+    public synchronized void solutionFound(double value, Variable[] assignment, long elapsed) {
+        this.lowerBound = value;
+        this.report(elapsed, false);
+    }
+
+    public synchronized void boundImproved(double upperBound, long elapsed) {
+        this.upperBound = upperBound;
+        this.report(elapsed, false);
+    }
+
+    public synchronized void stopped(double lowerBound, double upperBound, long elapsed) {
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+        this.report(elapsed, this.pending);
+    }
+
+    private void report(long elapsed, boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && this.lastPrint != Long.MIN_VALUE && now - this.lastPrint < this.interval) {
+            this.pending = true;
+            return;
+        }
+
+        String incumbent = this.lowerBound == -Double.MAX_VALUE ? "none" : String.valueOf(this.lowerBound);
+        System.out.println("Incumbent : " + incumbent + "  bound : " + this.upperBound
+                + "  gap : " + Session.gap(this.lowerBound, this.upperBound) + "  time : " + elapsed + " ms");
+        this.lastPrint = now;
+        this.pending = false;
+    }
+}
@@ -0,0 +1,533 @@
+package core;
+
+import dp.State;
+import dp.StateCodec;
+import heuristics.DeepestNodeSelector;
+import heuristics.NodeSelector;
+import utils.MultiQueue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Frontier of the branch and bound algorithm shared by the workers of the {@code Solver}.
+ * Keeps track of the nodes being explored in order to detect the end of the search :
+ * the frontier is exhausted when it is empty and no worker can add new nodes anymore.
+ * When a {@code SpillStore} is set, the nodes with the lowest bounds are moved to disk once the frontier
+ * outgrows its budget and reloaded, best bounds first, when the nodes in memory are exhausted.
+ * While the heap is under pressure, the nodes are explored depth-first in order to keep the frontier small.
+ * The nodes being explored are recorded in slots shared by a few workers, each one publishing the bound
+ * of its nodes and counting the moves of nodes between the queue and itself, so that the bound of the frontier
+ * is computed without locking and read again if a node moved in the meantime.
+ * When the nodes being explored are tracked for the snapshots, the operations moving nodes share a lock
+ * that the snapshots take exclusively, so that no node is missed while it moves.
+ *
+ * @author Vianney Coppé
+ */
+class Frontier {
+
+    private static final long IDLE_WAIT = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int BOUND_ATTEMPTS = 64; // the number of readings of the bound before giving up
+    private static final NodeSelector DEPTH_FIRST = new DeepestNodeSelector();
+
+    private MultiQueue<State> queue;
+    private NodeSelector nodeSelector;
+    private volatile Comparator<State> order;
+    private volatile boolean depthFirst; // overrides the selector while the heap is under pressure
+    private AtomicInteger pending;
+    private volatile boolean closed;
+    private SpillStore spill;
+    private int budget;
+    private ReadWriteLock gate;
+    private Map<State, State> running; // the nodes being explored with their copy, by identity
+    private StateCodec codec;
+    private final Slot[] slots;
+
+    /**
+     * Returns an empty frontier.
+     *
+     * @param nThreads     the number of workers sharing the frontier
+     * @param nodeSelector heuristic giving the order in which the nodes are explored
+     */
+    Frontier(int nThreads, NodeSelector nodeSelector) {
+        // nodes are popped in the order of the selector,
+        // exactly with a single worker and approximately with several ones
+        int nHeaps = nThreads == 1 ? 1 : 2 * nThreads;
+        this.nodeSelector = nodeSelector;
+        this.order = nodeSelector.order(0);
+        this.queue = new MultiQueue<>(nHeaps, this.order, State::relaxedValue);
+        this.pending = new AtomicInteger();
+        this.closed = false;
+        this.slots = new Slot[nHeaps];
+        for (int i = 0; i < nHeaps; i++) {
+            this.slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Adds a node to the frontier.
+     *
+     * @param state the node to be explored
+     */
+    void push(State state) {
+        this.enter();
+        try {
+            this.pending.incrementAndGet();
+            this.queue.add(state);
+            this.adapt();
+            this.spill();
+        } finally {
+            this.exit();
+        }
+    }
+
+    /**
+     * Adds all the nodes of a cutset to the frontier.
+     *
+     * @param states the nodes to be explored
+     */
+    void pushAll(Collection<State> states) {
+        this.enter();
+        try {
+            this.pending.addAndGet(states.size());
+            this.queue.addAll(states);
+            this.adapt();
+            this.spill();
+        } finally {
+            this.exit();
+        }
+    }
+
+    /**
+     * Sets the store to which the nodes are spilled when the frontier outgrows its budget.
+     *
+     * @param spill  the store on disk
+     * @param budget the maximum number of nodes kept in memory
+     */
+    void setSpill(SpillStore spill, int budget) {
+        this.spill = spill;
+        this.budget = budget;
+    }
+
+    /**
+     * Records the nodes being explored, which are then included in the snapshots.
+     * Only needed when the search is checkpointed, since the operations moving nodes then share a lock.
+     *
+     * @param codec the codec of the problem, used to record a compact copy of the nodes,
+     *              {@code null} if no snapshot is taken
+     */
+    void track(StateCodec codec) {
+        this.gate = new ReentrantReadWriteLock();
+        this.running = Collections.synchronizedMap(new IdentityHashMap<>());
+        this.codec = codec;
+    }
+
+    /**
+     * Returns the nodes left to explore, including the ones being explored, with the incumbent
+     * obtained while no node moves so that every node pruned is pruned by this incumbent.
+     *
+     * @param incumbent the supplier of the best solution found
+     * @return a checkpoint of the frontier without statistics
+     */
+    Checkpoint snapshot(Supplier<State> incumbent) {
+        this.gate.writeLock().lock();
+        try {
+            List<State> nodes = new ArrayList<>(this.running.values());
+            for (State state : this.queue.elements()) {
+                nodes.add(state.compactCopy(this.codec));
+            }
+            List<ByteBuffer> spilled = this.spill == null ? new ArrayList<>() : this.spill.records();
+            return new Checkpoint(incumbent.get(), nodes, spilled);
+        } finally {
+            this.gate.writeLock().unlock();
+        }
+    }
+
+    private void enter() {
+        if (this.gate != null) {
+            this.gate.readLock().lock();
+        }
+    }
+
+    private void exit() {
+        if (this.gate != null) {
+            this.gate.readLock().unlock();
+        }
+    }
+
+    /**
+     * Explores the nodes depth-first, whatever the selector, until it is called again with {@code false}.
+     *
+     * @param depthFirst {@code true} to explore the deepest nodes first
+     */
+    void setDepthFirst(boolean depthFirst) {
+        if (this.depthFirst != depthFirst) {
+            this.depthFirst = depthFirst;
+            this.enter();
+            try {
+                this.adapt();
+            } finally {
+                this.exit();
+            }
+        }
+    }
+
+    /**
+     * Moves the half of the nodes with the lowest bounds to the store, whatever the budget,
+     * in order to release memory.
+     *
+     * @return {@code false} if no store is set
+     */
+    boolean shed() {
+        if (this.spill == null) {
+            return false;
+        }
+
+        this.enter();
+        try {
+            this.spill(1);
+            return true;
+        } finally {
+            this.exit();
+        }
+    }
+
+    /**
+     * Moves the half of the nodes with the lowest bounds to the store if the frontier outgrows its budget.
+     * The spilled nodes are still pending.
+     */
+    private void spill() {
+        if (this.spill != null) {
+            this.spill(this.budget);
+        }
+    }
+
+    /**
+     * @param budget the number of nodes that the frontier can keep in memory
+     */
+    private void spill(int budget) {
+        if (this.queue.size() <= budget) {
+            return;
+        }
+
+        synchronized (this.spill) {
+            if (this.queue.size() <= budget) {
+                return;
+            }
+
+            List<State> states = new ArrayList<>();
+            this.queue.removeLeast(this.queue.size() / 2, states::add);
+            this.spill.write(states);
+        }
+    }
+
+    /**
+     * Moves the nodes with the best bounds from the store back to memory.
+     */
+    private void reload() {
+        synchronized (this.spill) {
+            if (this.queue.isEmpty()) {
+                this.queue.addAll(this.spill.read(Math.max(1, this.budget / 2)));
+            }
+        }
+    }
+
+    /**
+     * Reorders the nodes if the selector changes its order given the size of the frontier.
+     */
+    private void adapt() {
+        Comparator<State> order = this.depthFirst ? DEPTH_FIRST : this.nodeSelector.order(this.queue.size());
+        if (order != this.order) {
+            synchronized (this) {
+                if (order != this.order) {
+                    this.queue.reorder(order);
+                    this.order = order;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the nodes whose relaxed value is not better than the incumbent,
+     * so that they do not wait until they are polled to be discarded.
+     *
+     * @param incumbent the value of the best solution found
+     * @return the number of nodes removed
+     */
+    int purge(double incumbent) {
+        this.enter();
+        try {
+            int removed = this.queue.removeBelow(incumbent);
+            if (this.spill != null) {
+                removed += this.spill.removeBelow(incumbent);
+            }
+            this.pending.addAndGet(-removed);
+            return removed;
+        } finally {
+            this.exit();
+        }
+    }
+
+    /**
+     * Returns the next node to explore, waiting for the other workers if the frontier is empty
+     * but some nodes are still being explored.
+     * Every node returned should be followed by a call to {@code done} once explored.
+     *
+     * @return the next node to explore or {@code null} if the search is over
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    State poll() throws InterruptedException {
+        Slot slot = this.slot();
+        while (!this.closed) {
+            this.enter();
+            slot.moving.incrementAndGet();
+            try {
+                State state = this.queue.poll();
+                if (state != null) {
+                    this.run(slot, state);
+                    this.adapt();
+                    return state;
+                }
+
+                if (this.spill != null && this.spill.size() > 0) {
+                    this.reload();
+                    continue;
+                }
+            } finally {
+                slot.moved();
+                this.exit();
+            }
+
+            if (this.pending.get() == 0) {
+                return null;
+            }
+
+            LockSupport.parkNanos(IDLE_WAIT);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns up to {@code size} nodes to explore together : the next node, as returned by {@code poll},
+     * and the nodes among the {@code size - 1} following ones that bind the same variables.
+     * The other nodes are put back in the frontier.
+     * Every node returned should be followed by a call to {@code done} once explored.
+     *
+     * @param size the maximum number of nodes returned
+     * @return the next nodes to explore or an empty list if the search is over
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    List<State> poll(int size) throws InterruptedException {
+        State first = this.poll();
+        if (first == null) {
+            return Collections.emptyList();
+        }
+
+        List<State> batch = new ArrayList<>(size);
+        batch.add(first);
+        if (size == 1) {
+            return batch;
+        }
+
+        Slot slot = this.slot();
+        List<State> others = new ArrayList<>();
+        this.enter();
+        slot.moving.incrementAndGet(); // the other nodes are put back before the move ends
+        try {
+            for (int i = 1; i < size; i++) {
+                State state = this.queue.poll();
+                if (state == null) {
+                    break;
+                }
+
+                if (state.bindsSameVariables(first)) {
+                    this.run(slot, state);
+                    batch.add(state);
+                } else {
+                    others.add(state);
+                }
+            }
+            this.queue.addAll(others);
+        } finally {
+            slot.moved();
+            this.exit();
+        }
+        return batch;
+    }
+
+    /**
+     * Records a node polled as being explored.
+     *
+     * @param slot  the slot of the calling thread
+     * @param state the node polled
+     */
+    private void run(Slot slot, State state) {
+        slot.add(state);
+        if (this.running != null) {
+            this.running.put(state, this.codec != null ? state.compactCopy(this.codec) : state);
+        }
+    }
+
+    /**
+     * @return the slot of the calling thread, shared with the threads whose id falls in the same slot
+     */
+    private Slot slot() {
+        return this.slots[(int) (Thread.currentThread().getId() % this.slots.length)];
+    }
+
+    /**
+     * Signals that the exploration of a node returned by {@code poll} is over.
+     * The node may have been polled by another thread.
+     *
+     * @param state the node returned by {@code poll}
+     */
+    void done(State state) {
+        this.enter();
+        try {
+            Slot own = this.slot();
+            if (!own.remove(state)) {
+                for (Slot slot : this.slots) {
+                    if (slot != own && slot.remove(state)) {
+                        break;
+                    }
+                }
+            }
+            if (this.running != null) {
+                this.running.remove(state);
+            }
+            this.pending.decrementAndGet();
+        } finally {
+            this.exit();
+        }
+    }
+
+    /**
+     * Stops the search : every subsequent call to {@code poll} returns {@code null}.
+     */
+    void close() {
+        this.closed = true;
+    }
+
+    /**
+     * Allows the workers to poll the nodes left after the search was stopped.
+     */
+    void reopen() {
+        this.closed = false;
+    }
+
+    /**
+     * @return {@code true} <==> no node is left to explore or being explored
+     */
+    boolean isExhausted() {
+        return this.pending.get() == 0;
+    }
+
+    /**
+     * Returns the maximum relaxed value of the nodes waiting in the frontier and of the nodes being explored.
+     * The bound is read again as long as a node moves between the queue and a slot in the meantime.
+     * The nodes spilled have lower bounds than the ones left in the queue, and the children of a node
+     * are pushed before it is done, so that no other move can hide a node.
+     *
+     * @return an upper bound on the value of the solutions left to explore,
+     * {@code Double.POSITIVE_INFINITY} if the nodes kept moving
+     */
+    double bestBound() {
+        long[] versions = new long[this.slots.length];
+        for (int attempt = 0; attempt < BOUND_ATTEMPTS; attempt++) {
+            boolean moving = false;
+            for (int i = 0; i < this.slots.length && !moving; i++) {
+                versions[i] = this.slots[i].version.get();
+                moving = this.slots[i].moving.get() > 0;
+            }
+
+            if (!moving) {
+                double bestBound = this.waitingBound();
+                for (Slot slot : this.slots) {
+                    bestBound = Math.max(bestBound, slot.bound);
+                }
+
+                boolean moved = false;
+                for (int i = 0; i < this.slots.length && !moved; i++) {
+                    moved = this.slots[i].moving.get() > 0 || this.slots[i].version.get() != versions[i];
+                }
+                if (!moved) {
+                    return bestBound;
+                }
+            }
+            Thread.yield();
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    private double waitingBound() {
+        double bestBound = this.queue.maxBound();
+        if (this.spill != null) {
+            bestBound = Math.max(bestBound, this.spill.maxBound());
+        }
+        return bestBound;
+    }
+
+    /**
+     * Nodes being explored by the workers sharing a slot, with the maximum of their relaxed values.
+     * The moves in progress are counted and the version is incremented at the end of each move,
+     * so that a reader of the bound can tell if a node moved while it was reading.
+     */
+    private static final class Slot {
+
+        final AtomicInteger moving = new AtomicInteger();
+        final AtomicLong version = new AtomicLong();
+        final List<State> states = new ArrayList<>();
+        volatile double bound = -Double.MAX_VALUE;
+
+        /**
+         * Records a node polled, the caller being in a move.
+         */
+        synchronized void add(State state) {
+            this.states.add(state);
+            this.bound = Math.max(this.bound, state.relaxedValue());
+        }
+
+        /**
+         * Forgets a node once explored, in a move of its own.
+         *
+         * @return {@code false} if the node is not in the slot
+         */
+        synchronized boolean remove(State state) {
+            for (int i = 0; i < this.states.size(); i++) {
+                if (this.states.get(i) == state) {
+                    this.moving.incrementAndGet();
+                    this.states.remove(i);
+                    double bound = -Double.MAX_VALUE;
+                    for (State s : this.states) {
+                        bound = Math.max(bound, s.relaxedValue());
+                    }
+                    this.bound = bound;
+                    this.moved();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void moved() {
+            this.version.incrementAndGet();
+            this.moving.decrementAndGet();
+        }
+    }
+}
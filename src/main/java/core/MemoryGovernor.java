@@ -0,0 +1,137 @@
+package core;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watch of the heap occupancy of a search, from which the {@code Solver} degrades the search
+ * before it runs out of memory.
+ * The occupancy is read from the collection usage of the heap pools of the old generation, the ones
+ * supporting usage thresholds, so that it is measured on the live objects left by the last collection
+ * rather than on the garbage waiting for the next one.
+ * The heap is under pressure once a pool is filled beyond the threshold after a collection, and critical
+ * once a pool is filled beyond the middle of the threshold and its maximum size.
+ * The governor only reads the pools : their thresholds are left to the application, and several
+ * governors can watch the same heap.
+ *
+ * @author Vianney Coppé
+ */
+class MemoryGovernor {
+
+    private static final long CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final List<MemoryPoolMXBean> pools;
+    private final List<GarbageCollectorMXBean> collectors;
+    private final double threshold;
+    private final double critical;
+    private long collections; // the number of collections when the pools were last read
+    private volatile long lastCheck;
+    private volatile int level; // 0 : no pressure, 1 : under pressure, 2 : critical
+    private volatile long headroom;
+    private volatile long exceeded;    // the number of readings after a collection that left a pool above the threshold
+    private final AtomicLong relieved; // the value of exceeded when the search was last relieved
+
+    /**
+     * Starts watching the heap.
+     *
+     * @param threshold the fraction of the old generation above which the heap is under pressure
+     */
+    MemoryGovernor(double threshold) {
+        this.pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                    && pool.isCollectionUsageThresholdSupported() && pool.getUsage().getMax() > 0) {
+                this.pools.add(pool);
+            }
+        }
+
+        this.collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        this.threshold = threshold;
+        this.critical = threshold + (1 - threshold) / 2;
+        this.lastCheck = System.nanoTime() - CHECK_INTERVAL;
+        this.check();
+        this.relieved = new AtomicLong(this.exceeded);
+    }
+
+    /**
+     * @return {@code true} <==> the live objects fill a pool beyond the threshold
+     */
+    boolean underPressure() {
+        this.refresh();
+        return this.level > 0;
+    }
+
+    /**
+     * @return {@code true} <==> the live objects fill a pool beyond the middle of the threshold and its maximum size,
+     * the search should then stop
+     */
+    boolean isCritical() {
+        this.refresh();
+        return this.level > 1;
+    }
+
+    /**
+     * Tells a single thread that a collection left a pool above the threshold since the last call,
+     * so that the memory is released once per collection rather than once per node.
+     *
+     * @return {@code true} <==> the calling thread should release memory
+     */
+    boolean shouldRelieve() {
+        this.refresh();
+        long exceeded = this.exceeded;
+        long relieved = this.relieved.get();
+        return exceeded > relieved && this.relieved.compareAndSet(relieved, exceeded);
+    }
+
+    /**
+     * @return the estimated number of bytes that can still be allocated, measured after the last collection
+     */
+    long headroom() {
+        this.refresh();
+        return this.headroom;
+    }
+
+    /**
+     * Reads the pools again if the last reading is older than the check interval.
+     * The readings are serialized so that a collection is counted once.
+     */
+    private void refresh() {
+        if (System.nanoTime() - this.lastCheck >= CHECK_INTERVAL) {
+            this.check();
+        }
+    }
+
+    private synchronized void check() {
+        this.lastCheck = System.nanoTime();
+        long collections = 0;
+        for (GarbageCollectorMXBean collector : this.collectors) {
+            collections += Math.max(0, collector.getCollectionCount());
+        }
+
+        int level = 0;
+        long headroom = this.pools.isEmpty() ? Runtime.getRuntime().maxMemory() : 0;
+        for (MemoryPoolMXBean pool : this.pools) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            long max = pool.getUsage().getMax();
+            long used = usage == null ? 0 : usage.getUsed();
+            headroom += Math.max(0, max - used);
+
+            if (used >= this.threshold * max) {
+                level = Math.max(level, used >= this.critical * max ? 2 : 1);
+            }
+        }
+        if (level > 0 && collections != this.collections) {
+            this.exceeded++;
+        }
+        this.collections = collections;
+        this.headroom = headroom;
+        this.level = level;
+    }
+}
@@ -1,6 +1,7 @@
 package core;
 
 import dp.State;
+import dp.StateCodec;
 
 /**
  * Enables solving new problems by implementing the successors and merge functions.
@@ -29,6 +30,7 @@ public interface Problem {
      * the variable to every possible value.
      * Should transmit the cost, the exact property, the variables and assign a valid StateRepresentation
      * to the successors.
+     * May be called concurrently on different states when the layers are expanded in parallel.
      *
      * @param s   a state
      * @param var a variable belonging to the state's variables and not assigned yet
@@ -46,4 +48,29 @@ public interface Problem {
      */
     State merge(State[] states);
 
+    /**
+     * Returns a fast upper bound on the value that can still be added to the value of the state
+     * by assigning its free variables. The states that cannot lead to a better solution than
+     * the incumbent are then discarded while the DDs are compiled.
+     * Is called for every state generated and should thus be cheap to compute.
+     * May be called concurrently on different states when the layers are expanded in parallel.
+     *
+     * @param s a state
+     * @return an upper bound on the value of the best completion of the state minus its value,
+     * {@code Double.POSITIVE_INFINITY} by default i. e. no bound is known
+     */
+    default double roughUpperBound(State s) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the codec used to store the states waiting in the frontier of the branch and bound in a compact form.
+     *
+     * @return a codec for the {@code StateRepresentation} of the problem,
+     * {@code null} by default i. e. the states are stored as they are
+     */
+    default StateCodec codec() {
+        return null;
+    }
+
 }
@@ -0,0 +1,138 @@
+package core;
+
+import dp.State;
+import utils.Deadline;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search of a {@code Solver} run in slices of time : the frontier, the incumbent and the statistics
+ * are kept in memory between two slices, so that each slice continues the branch and bound
+ * where the previous one stopped instead of starting again from the root.
+ * The bounds are exact between two slices, when no node is being explored.
+ * A session is closed when its solver starts another one.
+ *
+ * @author Vianney Coppé
+ */
+public class Session {
+
+    private final Solver solver;
+    private final Frontier frontier;
+    private final SpillStore spill;
+    private boolean closed;
+    private State best;            // kept once the session is closed
+    private Statistics statistics; // kept once the session is closed
+    private double upperBound;     // kept once the session is closed
+
+    /**
+     * @param solver   the solver running the search
+     * @param frontier the frontier containing the nodes to explore
+     * @param spill    the store of the spilled nodes or {@code null}
+     */
+    Session(Solver solver, Frontier frontier, SpillStore spill) {
+        this.solver = solver;
+        this.frontier = frontier;
+        this.spill = spill;
+        this.closed = false;
+    }
+
+    /**
+     * Runs the branch and bound until the search is complete, the given time is spent
+     * or the search is cancelled with {@code Solver.cancel}.
+     *
+     * @param duration the maximum duration of the slice
+     * @param unit     the unit of the duration
+     * @return the best solution found since the session started or {@code null} if no solution was found
+     */
+    public State continueFor(long duration, TimeUnit unit) {
+        if (this.closed) {
+            throw new IllegalStateException("The session is closed");
+        }
+
+        if (!this.isComplete()) {
+            this.solver.search(this.frontier, Deadline.after(duration, unit));
+        }
+        return this.best();
+    }
+
+    /**
+     * @return {@code true} <==> all the nodes were explored or pruned, the best solution is then optimal
+     * or within the tolerance of the solver
+     */
+    public boolean isComplete() {
+        return this.frontier.isExhausted();
+    }
+
+    /**
+     * @return the best solution found or {@code null} if no solution was found
+     */
+    public State best() {
+        return this.closed ? this.best : this.solver.incumbent();
+    }
+
+    /**
+     * @return the value of the best solution found, {@code -Double.MAX_VALUE} if no solution was found
+     */
+    public double lowerBound() {
+        State best = this.best();
+        return best == null ? -Double.MAX_VALUE : best.value();
+    }
+
+    /**
+     * @return an upper bound on the optimal value : the greatest relaxed value of the nodes left to explore,
+     * or the value of the best solution plus the tolerance of the solver if it is greater,
+     * the bound never increases during the session
+     */
+    public double upperBound() {
+        return this.closed ? this.upperBound : this.solver.upperBound(this.frontier);
+    }
+
+    /**
+     * Returns the gap proven between the bounds, relative to the upper bound.
+     * A complete search without solution proves that the problem has none, the gap is then infinite as well.
+     *
+     * @return (upperBound - lowerBound) / |upperBound|, {@code Double.POSITIVE_INFINITY} if no solution was found
+     * or no finite upper bound is known, and {@code 0} otherwise if the search is complete
+     */
+    public double gap() {
+        return gap(this.lowerBound(), this.upperBound());
+    }
+
+    /**
+     * @param lowerBound the value of the incumbent, {@code -Double.MAX_VALUE} if no solution was found
+     * @param upperBound an upper bound on the optimal value, possibly infinite
+     * @return the gap between the bounds relative to the upper bound
+     */
+    static double gap(double lowerBound, double upperBound) {
+        if (lowerBound == -Double.MAX_VALUE || Double.isInfinite(upperBound)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (upperBound == lowerBound) {
+            return 0;
+        }
+        return (upperBound - lowerBound) / Math.abs(upperBound);
+    }
+
+    /**
+     * @return the statistics of the search over all the slices
+     */
+    public Statistics statistics() {
+        return this.closed ? this.statistics : this.solver.statistics();
+    }
+
+    /**
+     * Ends the session and deletes the files of the spilled nodes.
+     * The best solution and the statistics remain available.
+     */
+    public void close() {
+        if (!this.closed) {
+            this.best = this.solver.incumbent();
+            this.statistics = this.solver.statistics();
+            this.upperBound = this.solver.upperBound(this.frontier);
+            this.closed = true;
+            if (this.spill != null) {
+                this.spill.close();
+            }
+        }
+    }
+}
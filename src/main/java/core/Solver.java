@@ -2,15 +2,49 @@ package core;
 
 import dp.DP;
 import dp.State;
+import dp.StateCodec;
 import heuristics.DeleteSelector;
+import heuristics.FixedWidthSelector;
 import heuristics.MergeSelector;
+import heuristics.NodeSelector;
+import heuristics.RankNodeSelector;
 import heuristics.VariableSelector;
+import heuristics.WidthSelector;
+import utils.Deadline;
 
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * Implementation of the branch and bound algorithm for MDDs.
+ * The search can be shared between several worker threads, each one owning its own {@code DP}
+ * instance and pulling nodes from a common frontier.
+ * The nodes waiting in the frontier are kept in a compact form if the problem provides a codec,
+ * and can then be spilled to disk when they outgrow a given budget or saved in checkpoints
+ * from which an interrupted search can be resumed.
+ * The progress of the search is reported to listeners by a separate thread, which also stops the search
+ * once the gap between the bounds is small enough.
+ * With a tolerance, the search proves that its solution is within the tolerance of the optimum
+ * and prunes the nodes that cannot improve it by more than the tolerance.
+ * The widths of the DDs are given by a {@code WidthSelector}, which can adapt them to the time
+ * spent compiling the DDs and to their results.
+ * A memory governor degrades the search while the heap is nearly full and stops it, as if its time was up,
+ * rather than letting it run out of memory. A search stopped by an {@code OutOfMemoryError} nonetheless
+ * is reported as such by its statistics.
  *
  * @author Vianney Coppé
  */
@@ -18,12 +52,47 @@ public class Solver {
 
     private boolean print = true;
     private int maxWidth = Integer.MAX_VALUE;
+    private int nThreads = 1;
+    private int layerParallelism = 1;
+    private boolean streaming = false;
+    private boolean pipelining = false;
+    private int batchSize = 1;
+    private long cacheSize = 16L << 20;
+    private int spillBudget = 0;
+    private File spillDirectory;
+    private File checkpointFile;
+    private int checkpointInterval;
+    private double gapLimit = 0;
+    private double relativeTolerance = 0;
+    private double absoluteTolerance = 0;
+    private int reportInterval = 100;
+    private double memoryThreshold = 0.8;
 
     private Problem problem;
-    private DP dp;
+    private MergeSelector mergeSelector;
+    private DeleteSelector deleteSelector;
+    private VariableSelector variableSelector;
+    private NodeSelector nodeSelector = new RankNodeSelector();
+    private WidthSelector widthSelector = new FixedWidthSelector();
+
+    private AtomicReference<State> best;
+    private ForkJoinPool pool;
+    private ThresholdCache cache;
+    private StateCodec codec;
+    private Statistics statistics;
+    private Session session;
+    private List<SolverListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile ScheduledExecutorService events;
+    private volatile MemoryGovernor governor;
+    private volatile List<SolverListener> active; // the listeners of the running slice
+    private volatile Deadline deadline;           // the deadline of the running slice
+    private double reportedBound;
+    private double upperBound; // the least upper bound read during the session
 
     /**
      * Constructor of the solver : allows the user to choose heuristics.
+     * The heuristics are shared by all the workers and should thus be thread-safe when
+     * solving with more than one thread.
      *
      * @param problem          the implementation of a problem
      * @param mergeSelector    heuristic to select nodes to merge (to build relaxed MDDs)
@@ -32,7 +101,295 @@ public class Solver {
      */
     public Solver(Problem problem, MergeSelector mergeSelector, DeleteSelector deleteSelector, VariableSelector variableSelector) {
         this.problem = problem;
-        this.dp = new DP(problem, mergeSelector, deleteSelector, variableSelector);
+        this.mergeSelector = mergeSelector;
+        this.deleteSelector = deleteSelector;
+        this.variableSelector = variableSelector;
+        this.best = new AtomicReference<>();
+    }
+
+    /**
+     * Sets the number of worker threads exploring the branch and bound tree.
+     *
+     * @param nThreads the number of workers, {@code 1} by default
+     */
+    public void setNThreads(int nThreads) {
+        if (nThreads < 1) {
+            throw new IllegalArgumentException("The number of threads should be positive");
+        }
+        this.nThreads = nThreads;
+    }
+
+    /**
+     * Sets the maximum width of the DDs, which caps the widths given by the width selector.
+     *
+     * @param maxWidth the maximum width of the DDs of a node, unbounded by default
+     */
+    public void setMaxWidth(int maxWidth) {
+        if (maxWidth < 1) {
+            throw new IllegalArgumentException("The maximum width should be positive");
+        }
+        this.maxWidth = maxWidth;
+    }
+
+    /**
+     * Sets the heuristic giving the widths of the restricted and relaxed DDs of the nodes.
+     * The mean widths of the DDs compiled are given by the statistics of the search.
+     *
+     * @param widthSelector the widths of the DDs, {@code FixedWidthSelector} by default
+     * @see heuristics.AdaptiveWidthSelector
+     */
+    public void setWidthSelector(WidthSelector widthSelector) {
+        this.widthSelector = widthSelector;
+    }
+
+    /**
+     * Sets the occupancy of the heap above which the search is degraded in order to save memory :
+     * the widths of the DDs are bounded by the memory left, the nodes are explored depth-first,
+     * the frontier is purged and half of it is spilled if spilling is enabled.
+     * The search stops, as if its time was up, once the heap is nearly full.
+     * The occupancy is the one of the old generation after a collection, read without changing
+     * the thresholds of the memory pools. Should a DD run out of memory anyway, the search is stopped
+     * as well and {@code Statistics.ranOutOfMemory} tells it.
+     *
+     * @param memoryThreshold the fraction of the heap, {@code 0.8} by default, {@code 0} to disable the governor
+     */
+    public void setMemoryThreshold(double memoryThreshold) {
+        if (memoryThreshold < 0 || memoryThreshold >= 1) {
+            throw new IllegalArgumentException("The memory threshold should be in [0, 1)");
+        }
+        this.memoryThreshold = memoryThreshold;
+    }
+
+    /**
+     * Sets the number of threads generating the successors of a wide layer in parallel.
+     * These threads are shared by all the workers.
+     * The {@code Problem} implementation should then support concurrent calls to {@code successors}.
+     *
+     * @param layerParallelism the number of threads expanding a layer, {@code 1} by default
+     */
+    public void setLayerParallelism(int layerParallelism) {
+        if (layerParallelism < 1) {
+            throw new IllegalArgumentException("The number of threads should be positive");
+        }
+        this.layerParallelism = layerParallelism;
+    }
+
+    /**
+     * Enables the streaming compilation of the layers, trimming them while they are built
+     * so that their size stays close to the maximum width.
+     *
+     * @param streaming {@code true} to trim the layers while they are built, {@code false} by default
+     * @see DP#setStreaming(boolean)
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Enables the pipelined exploration of the nodes : each worker compiles the relaxed DD of a node on
+     * a helper thread while it compiles the restricted DD itself, and starts the restricted DD of the next node
+     * while the relaxed one finishes. The relaxed DD is cancelled as soon as the restricted one is exact.
+     * Each worker then uses two threads, and the relaxed DD neither benefits from the solution of the restricted DD
+     * of the same node nor shares its exact prefix.
+     *
+     * @param pipelining {@code true} to compile the two DDs of a node concurrently, {@code false} by default
+     */
+    public void setPipelining(boolean pipelining) {
+        this.pipelining = pipelining;
+    }
+
+    /**
+     * Sets the maximum number of nodes compiled together in the same DDs. The nodes of a batch are polled
+     * consecutively from the frontier and bind the same variables, their common descendants are then generated once.
+     * The width of the DDs of a batch is the width of a single node multiplied by the number of nodes,
+     * and each node keeps the bound given by the paths starting from it.
+     * The batches are not used in pipelined mode.
+     *
+     * @param batchSize the maximum number of nodes of a batch, {@code 1} by default
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The size of the batches should be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the heuristic giving the order in which the nodes of the frontier are explored.
+     *
+     * @param nodeSelector the order of the nodes, {@code RankNodeSelector} by default
+     */
+    public void setNodeSelector(NodeSelector nodeSelector) {
+        this.nodeSelector = nodeSelector;
+    }
+
+    /**
+     * Sets the memory of the cache of thresholds shared by the workers.
+     * A node of the branch and bound is pruned before its DDs are compiled if its state was already
+     * reached with a value at least as good or shown not to improve the incumbent below some value.
+     * The memory of an entry is estimated from the footprint of its {@code StateRepresentation}.
+     *
+     * @param cacheSize the maximum number of bytes used by the cache, {@code 0} to disable it,
+     *                  {@code 16} MB by default
+     * @see dp.StateRepresentation#footprint()
+     */
+    public void setCacheSize(long cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("The size of the cache should not be negative");
+        }
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Enables the spilling of the frontier to disk : once more than {@code spillBudget} nodes are waiting,
+     * the half with the lowest bounds is written to memory-mapped segment files in the given directory
+     * and reloaded when the nodes in memory are exhausted. The files are deleted at the end of the search.
+     * The problem should provide a codec.
+     *
+     * @param spillBudget    the maximum number of nodes kept in memory, {@code 0} to disable spilling (default)
+     * @param spillDirectory the directory in which the segment files are created,
+     *                       {@code null} for the default temporary-file directory
+     * @see Problem#codec()
+     */
+    public void setSpill(int spillBudget, File spillDirectory) {
+        if (spillBudget < 0) {
+            throw new IllegalArgumentException("The budget of the frontier should not be negative");
+        }
+        this.spillBudget = spillBudget;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Returns the cache of thresholds used by the last search, giving its hit and miss counters.
+     *
+     * @return the cache or {@code null} if it is disabled
+     */
+    public ThresholdCache cache() {
+        return this.cache;
+    }
+
+    /**
+     * Enables the periodic checkpoints of the search : the incumbent, the nodes left to explore and the statistics
+     * are written to the given file every {@code checkpointInterval} seconds and when the search stops.
+     * The checkpoints are written by a background thread, the workers being only stopped while the references
+     * to the nodes are copied. The problem should provide a codec.
+     *
+     * @param checkpointFile     the file replaced by each checkpoint, {@code null} to disable the checkpoints (default)
+     * @param checkpointInterval the time between two checkpoints in seconds
+     * @see #resume(File, int)
+     */
+    public void setCheckpoint(File checkpointFile, int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("The interval between two checkpoints should be positive");
+        }
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Registers a listener of the progress of the searches.
+     *
+     * @param listener the listener
+     */
+    public void addListener(SolverListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Stops the search once the gap between the bounds, (upperBound - lowerBound) / |upperBound|,
+     * is smaller than the given value. The gap is checked every report interval.
+     *
+     * @param gapLimit the relative gap at which the search stops, {@code 0} to prove optimality (default)
+     * @see Session#gap()
+     */
+    public void setGapLimit(double gapLimit) {
+        if (gapLimit < 0) {
+            throw new IllegalArgumentException("The gap limit should not be negative");
+        }
+        this.gapLimit = gapLimit;
+    }
+
+    /**
+     * Enables the epsilon-optimal mode : the nodes whose relaxed value is not greater than
+     * {@code incumbent + max(relativeTolerance * |incumbent|, absoluteTolerance)} are pruned,
+     * for positive objectives every node not better than {@code (1 + relativeTolerance) * incumbent}.
+     * The solution returned is then proven to be within the tolerance of the optimum, the gap reported
+     * by the session taking the pruned nodes into account.
+     *
+     * @param relativeTolerance the tolerance relative to the value of the incumbent, {@code 0} by default
+     * @param absoluteTolerance the absolute tolerance, {@code 0} by default
+     */
+    public void setTolerance(double relativeTolerance, double absoluteTolerance) {
+        if (relativeTolerance < 0 || absoluteTolerance < 0) {
+            throw new IllegalArgumentException("The tolerance should not be negative");
+        }
+        this.relativeTolerance = relativeTolerance;
+        this.absoluteTolerance = absoluteTolerance;
+    }
+
+    /**
+     * Sets the time between two checks of the upper bound, which is then reported to the listeners
+     * if it improved and compared to the incumbent to stop the search at the gap limit.
+     *
+     * @param reportInterval the time between two checks in milliseconds, {@code 100} by default
+     */
+    public void setReportInterval(int reportInterval) {
+        if (reportInterval < 1) {
+            throw new IllegalArgumentException("The report interval should be positive");
+        }
+        this.reportInterval = reportInterval;
+    }
+
+    /**
+     * Returns the gap proven by the last search between the value of its solution and the optimal value,
+     * relative to the upper bound.
+     *
+     * @return {@code 0} if the solution is optimal, {@code Double.POSITIVE_INFINITY} if no search was run
+     * @see Session#gap()
+     */
+    public double gap() {
+        return this.session == null ? Double.POSITIVE_INFINITY : this.session.gap();
+    }
+
+    /**
+     * Returns the statistics of the last search.
+     *
+     * @return the statistics or {@code null} if no search was run
+     */
+    public Statistics statistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Starts a new search from the root of the problem without exploring any node.
+     * The previous session of the solver is closed.
+     *
+     * @return a session running the search in slices of time
+     */
+    public Session start() {
+        this.codec = this.problem.codec();
+        State root = this.problem.root();
+        return this.open(root, new Checkpoint(null, Collections.singletonList(root), Collections.emptyList()));
+    }
+
+    /**
+     * Restores the search saved in a checkpoint without exploring any node : the incumbent and the nodes
+     * left to explore are restored, so that the search proves the optimality of its solution as if it had
+     * never been interrupted. The heuristics and the options of the solver may differ from the ones
+     * of the interrupted search. The previous session of the solver is closed.
+     *
+     * @param checkpoint a file written by a solver of the same problem with checkpoints enabled
+     * @return a session running the search in slices of time
+     * @throws IOException if the checkpoint cannot be read
+     * @see #setCheckpoint(File, int)
+     */
+    public Session restore(File checkpoint) throws IOException {
+        this.codec = this.problem.codec();
+        if (this.codec == null) {
+            throw new IllegalStateException("Resuming a search requires the problem to provide a codec");
+        }
+        State root = this.problem.root();
+        return this.open(root, Checkpoint.read(checkpoint, root, this.problem.nVariables()));
     }
 
     /**
@@ -41,61 +398,257 @@ public class Solver {
      * @return an object {@code State} containing the optimal value and assignment
      */
     public State solve(int timeOut) {
-        long startTime = System.currentTimeMillis();
+        Session session = this.start();
+        try {
+            session.continueFor(timeOut, TimeUnit.SECONDS);
+        } finally {
+            session.close();
+        }
+        return this.report(session);
+    }
+
+    /**
+     * Solves the problem with no timeout.
+     *
+     * @return the state with optimal assignment
+     */
+    public State solve() {
+        return this.solve(Integer.MAX_VALUE / 1000);
+    }
+
+    /**
+     * Resumes the search saved in a checkpoint and runs it until it is complete or the time limit is reached.
+     *
+     * @param checkpoint a file written by a solver of the same problem with checkpoints enabled
+     * @param timeOut    the time limit of the resumed search in seconds
+     * @return an object {@code State} containing the optimal value and assignment
+     * @throws IOException if the checkpoint cannot be read
+     * @see #restore(File)
+     */
+    public State resume(File checkpoint, int timeOut) throws IOException {
+        Session session = this.restore(checkpoint);
+        try {
+            session.continueFor(timeOut, TimeUnit.SECONDS);
+        } finally {
+            session.close();
+        }
+        return this.report(session);
+    }
 
-        State best = null;
-        double bestBound = -Double.MAX_VALUE;
+    /**
+     * Stops the running search as soon as possible, typically within a few milliseconds, and can be
+     * called from any thread. The nodes being explored are put back in the frontier so that the session
+     * can be continued later. Interrupting the thread running the search has the same effect.
+     */
+    public void cancel() {
+        Deadline deadline = this.deadline;
+        if (deadline != null) {
+            deadline.cancel();
+        }
+    }
+
+    /**
+     * Prepares a search from the nodes and the incumbent of the given checkpoint.
+     *
+     * @param root  the root of the problem
+     * @param start the checkpoint from which the search starts
+     * @return the session of the search
+     */
+    private Session open(State root, Checkpoint start) {
+        if (this.session != null) {
+            this.session.close();
+        }
 
-        Queue<State> q = new PriorityQueue<>(); // nodes are popped starting with the one with least value
-        q.add(this.problem.root());
+        this.best.set(null);
+        if (start.incumbent != null) {
+            start.incumbent.expand(this.codec);
+            this.best.set(start.incumbent);
+        }
+        this.statistics = new Statistics(start.explored, start.pruned, start.elapsed);
+        this.cache = this.cacheSize > 0 ? new ThresholdCache(this.cacheSize) : null;
 
-        while (!q.isEmpty()) {
-            State state = q.poll();
-            if (state.relaxedValue() <= bestBound) {
-                continue;
+        Frontier frontier = new Frontier(this.nThreads, this.nodeSelector);
+        SpillStore spill = null;
+        if (this.spillBudget > 0) {
+            if (this.codec == null) {
+                throw new IllegalStateException("Spilling the frontier requires the problem to provide a codec");
             }
+            spill = new SpillStore(this.spillDirectory, SpillStore.SEGMENT_SIZE, this.codec, root);
+            frontier.setSpill(spill, this.spillBudget);
+        }
+        if (this.checkpointFile != null && this.codec == null) {
+            throw new IllegalStateException("Checkpointing the search requires the problem to provide a codec");
+        }
+        if (this.checkpointFile != null) {
+            frontier.track(this.codec);
+        }
+        frontier.pushAll(start.nodes);
+        this.reportedBound = Double.MAX_VALUE;
+        this.upperBound = Double.POSITIVE_INFINITY;
+
+        this.session = new Session(this, frontier, spill);
+        return this.session;
+    }
 
-            this.dp.setInitialState(state);
-            State resultRestricted = this.dp.solveRestricted(Math.min(maxWidth, problem.nVariables() - state.layerNumber()),// the width of the DD is equal to the number
-                    startTime, timeOut);                                                                        // of variables not bound
+    /**
+     * Runs the workers of a session until the frontier is exhausted or the deadline is reached.
+     *
+     * @param frontier the frontier of the session
+     * @param deadline the deadline of the slice
+     */
+    void search(Frontier frontier, Deadline deadline) {
+        ScheduledExecutorService checkpoints = null;
+        if (this.checkpointFile != null) {
+            checkpoints = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "solver-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+            checkpoints.scheduleWithFixedDelay(() -> this.checkpoint(frontier),
+                    this.checkpointInterval, this.checkpointInterval, TimeUnit.SECONDS);
+        }
+        List<SolverListener> listeners = new ArrayList<>(this.listeners);
+        if (print) {
+            listeners.add(new ConsoleReporter(1000));
+        }
+        if (!listeners.isEmpty() || this.gapLimit > 0) {
+            this.active = listeners;
+            this.events = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "solver-events");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.events.scheduleAtFixedRate(() -> this.monitor(frontier, listeners),
+                    this.reportInterval, this.reportInterval, TimeUnit.MILLISECONDS);
+        }
+        this.pool = this.layerParallelism > 1 ? new ForkJoinPool(this.layerParallelism) : null;
+        this.governor = this.memoryThreshold > 0 ? new MemoryGovernor(this.memoryThreshold) : null;
+        this.statistics.start();
+        frontier.reopen();
+        this.deadline = deadline;
 
-            if (best == null || resultRestricted.value() > bestBound) {
-                best = resultRestricted;
-                bestBound = best.value();
-                if (print) {
-                    System.out.println("Improved solution : " + best.value());
+        try {
+            this.run(frontier, deadline);
+        } finally {
+            this.deadline = null;
+            this.statistics.stop();
+            if (this.events != null) {
+                this.events.execute(() -> {
+                    double upperBound = this.monitor(frontier, listeners);
+                    long elapsed = this.statistics.elapsed();
+                    fire(listeners, l -> l.stopped(this.bestBound(), upperBound, elapsed));
+                });
+                this.events.shutdown();
+                try {
+                    this.events.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
+                this.events = null;
             }
-
-            if (System.currentTimeMillis() - startTime > timeOut * 1000) {
-                return best;
+            if (checkpoints != null) {
+                checkpoints.shutdown();
+                try {
+                    checkpoints.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                this.checkpoint(frontier); // the nodes interrupted by the time limit are back in the frontier
+            }
+            if (this.pool != null) {
+                this.pool.shutdown();
+                this.pool = null;
             }
+            this.governor = null;
+        }
+    }
 
-            if (!this.dp.isExact()) {
-                this.dp.setInitialState(state);
-                State resultRelaxed = this.dp.solveRelaxed(Math.min(maxWidth, problem.nVariables() - state.layerNumber()), startTime, timeOut);
+    /**
+     * Computes the upper bound, reports it to the listeners if it improved and stops the search
+     * if the gap limit is reached. Only called by the thread delivering the events.
+     *
+     * @param frontier  the frontier of the search
+     * @param listeners the listeners of the search
+     * @return the upper bound
+     */
+    private double monitor(Frontier frontier, List<SolverListener> listeners) {
+        double lowerBound = this.bestBound();
+        double upperBound = this.upperBound(frontier);
+        if (upperBound < this.reportedBound) {
+            this.reportedBound = upperBound;
+            long elapsed = this.statistics.elapsed();
+            fire(listeners, l -> l.boundImproved(upperBound, elapsed));
+        }
+        if (this.gapLimit > 0 && Session.gap(lowerBound, upperBound) < this.gapLimit) {
+            frontier.close();
+        }
+        return upperBound;
+    }
 
-                if (resultRelaxed.value() > bestBound) {
-                    for (State s : this.dp.exactCutset()) {
-                        s.setRelaxedValue(resultRelaxed.value());
-                        q.add(s);
-                    }
-                }
+    /**
+     * Reports a new incumbent to the listeners without waiting for them.
+     *
+     * @param solution the new incumbent
+     */
+    private void solutionFound(State solution) {
+        ScheduledExecutorService events = this.events;
+        if (events != null) {
+            long elapsed = this.statistics.elapsed();
+            List<SolverListener> listeners = this.active;
+            events.execute(() -> {
+                Variable[] assignment = solution.variables();
+                fire(listeners, l -> l.solutionFound(solution.value(), assignment, elapsed));
+            });
+        }
+    }
 
-                if (System.currentTimeMillis() - startTime > timeOut * 1000) {
-                    return best;
-                }
+    /**
+     * Calls the listeners, reporting their failures without stopping the search.
+     *
+     * @param listeners the listeners to call
+     * @param event     the call
+     */
+    private static void fire(List<SolverListener> listeners, Consumer<SolverListener> event) {
+        for (SolverListener listener : listeners) {
+            try {
+                event.accept(listener);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
             }
         }
+    }
 
+    /**
+     * Prints the solution found by a search.
+     *
+     * @param session the session of the search
+     * @return the best solution found
+     */
+    private State report(Session session) {
+        State best = session.best();
         if (print) {
+            boolean outOfMemory = session.statistics().ranOutOfMemory();
             if (best == null) {
-                System.out.println("No solution found.");
+                System.out.println(outOfMemory ? "No solution found, out of memory." : "No solution found.");
+            } else if (!session.isComplete()) {
+                System.out.println(outOfMemory ? "====== Search stopped : out of memory ======" : "====== Search stopped ======");
+                System.out.println("Best solution    : " + best.value());
+                System.out.println("Proven gap       : " + session.gap());
+                System.out.print("Assignment       : ");
+                for (Variable var : best.variables()) {
+                    if (var.value() == 1) System.out.print(var.id + " ");
+                }
+                System.out.println();
             } else {
                 System.out.println("====== Search completed ======");
-                System.out.println("Optimal solution : " + best.value());
+                if (session.gap() > 0) { // the solution is proven within the tolerance of the optimum
+                    System.out.println("Best solution    : " + best.value());
+                    System.out.println("Proven gap       : " + session.gap());
+                } else {
+                    System.out.println("Optimal solution : " + best.value());
+                }
                 System.out.print("Assignment       : ");
-                for (Variable var : best.variables) {
+                for (Variable var : best.variables()) {
                     if (var.value() == 1) System.out.print(var.id + " ");
                 }
                 System.out.println();
@@ -106,11 +659,665 @@ public class Solver {
     }
 
     /**
-     * Solves the problem with no timeout.
+     * Writes a checkpoint of the search, reporting the failures without stopping the search.
      *
-     * @return the state with optimal assignment
+     * @param frontier the frontier of the search
      */
-    public State solve() {
-        return this.solve(Integer.MAX_VALUE / 1000);
+    private void checkpoint(Frontier frontier) {
+        Checkpoint checkpoint = frontier.snapshot(this.best::get);
+        checkpoint.explored = this.statistics.nodesExplored();
+        checkpoint.pruned = this.statistics.nodesPruned();
+        checkpoint.elapsed = this.statistics.elapsed();
+        try {
+            checkpoint.write(this.checkpointFile, this.codec, this.problem.nVariables());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Runs the workers until the frontier is exhausted or the deadline is reached.
+     * If the calling thread is interrupted, the workers stop as if the deadline was reached.
+     *
+     * @param frontier the frontier containing the nodes to explore
+     * @param deadline the deadline of the slice
+     */
+    private void run(Frontier frontier, Deadline deadline) {
+        if (this.nThreads == 1) {
+            this.explore(frontier, deadline);
+            return;
+        }
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[this.nThreads];
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(() -> {
+                try {
+                    this.explore(frontier, deadline);
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                    frontier.close();
+                }
+            }, "solver-worker-" + i);
+            workers[i].start();
+        }
+
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    deadline.cancel(); // the workers put their nodes back in the frontier and stop
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+    }
+
+    /**
+     * Main loop of a worker : pops nodes from the frontier until it is exhausted,
+     * solves their restricted and relaxed DDs and pushes the exact cutset back in the frontier.
+     *
+     * @param frontier the frontier shared by all the workers
+     * @param deadline the deadline of the slice
+     */
+    private void explore(Frontier frontier, Deadline deadline) {
+        if (this.pipelining) {
+            this.explorePipelined(frontier, deadline);
+            return;
+        }
+
+        DP dp = this.dp();
+
+        while (true) {
+            List<State> batch;
+            try {
+                batch = frontier.poll(this.batchSize);
+            } catch (InterruptedException e) {
+                frontier.close();
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            try {
+                this.relieve(frontier, deadline);
+                if (deadline.expired()) {
+                    this.suspend(frontier, batch);
+                    return;
+                }
+
+                List<State> roots = new ArrayList<>(batch.size());
+                for (State state : batch) {
+                    if (this.admit(state)) {
+                        roots.add(state);
+                    }
+                }
+                if (roots.isEmpty()) {
+                    continue;
+                }
+
+                int width = this.width(roots.get(0), false);
+                double incumbent = this.pruningBound();
+                dp.setIncumbent(incumbent);
+                dp.setInitialStates(roots);
+                long start = System.nanoTime();
+                State resultRestricted = dp.solveRestricted(batchWidth(width, roots), deadline);
+
+                if (deadline.expired()) {
+                    this.suspend(frontier, roots);
+                    return;
+                }
+
+                this.compiled(roots, width, start, false, dp.isExact());
+                this.offer(frontier, resultRestricted);
+
+                if (dp.isExact()) {
+                    for (State root : roots) {
+                        this.updateCache(root, resultRestricted, incumbent);
+                    }
+                }
+
+                if (!dp.isExact()) {
+                    width = this.width(roots.get(0), true);
+                    incumbent = this.pruningBound();
+                    dp.setIncumbent(incumbent);
+                    start = System.nanoTime();
+                    State resultRelaxed = dp.solveRelaxed(batchWidth(width, roots), deadline); // starts from the exact prefix of the restricted DD
+
+                    if (deadline.expired()) {
+                        this.suspend(frontier, roots);
+                        return;
+                    }
+
+                    this.compiled(roots, width, start, true, resultRelaxed == null || resultRelaxed.value() <= this.pruningBound());
+                    this.branch(frontier, dp, roots, resultRelaxed, incumbent);
+                }
+            } catch (OutOfMemoryError e) { // last resort, reported by the statistics
+                this.outOfMemory(deadline);
+                this.suspend(frontier, batch);
+                return;
+            } finally {
+                for (State state : batch) {
+                    frontier.done(state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Main loop of a worker in pipelined mode : the relaxed DD of each node is compiled by a helper thread
+     * while the worker compiles the restricted DD, then the worker polls the next node without waiting
+     * for the relaxed DD. The helper compiles one relaxed DD at a time, and the worker waits for the relaxed DD
+     * of a node before polling the node after the next one.
+     *
+     * @param frontier the frontier shared by all the workers
+     * @param deadline the deadline of the slice
+     */
+    private void explorePipelined(Frontier frontier, Deadline deadline) {
+        DP dp = this.dp();
+        DP relaxedDP = this.dp();
+        String name = Thread.currentThread().getName();
+        ExecutorService helper = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, name + "-relaxed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Future<?> relaxing = null;
+
+        try {
+            while (true) {
+                State state;
+                try {
+                    state = frontier.poll();
+                } catch (InterruptedException e) {
+                    frontier.close();
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                if (state == null) {
+                    return;
+                }
+
+                this.relieve(frontier, deadline);
+                if (deadline.expired()) {
+                    this.suspend(frontier, state);
+                    frontier.done(state);
+                    return;
+                }
+
+                if (!this.admit(state)) {
+                    frontier.done(state);
+                    continue;
+                }
+
+                List<State> roots = Collections.singletonList(state);
+                int restrictedWidth = this.width(state, false);
+                int relaxedWidth = this.width(state, true);
+                Exploration node = new Exploration(frontier, state);
+                Deadline relaxation = deadline.child();
+                State root = state.copy(); // the two DDs expand their initial state concurrently
+                root.setLayerNumber(state.layerNumber());
+
+                Future<?> previous = relaxing;
+                relaxing = helper.submit(() -> {
+                    try {
+                        double incumbent = this.pruningBound();
+                        relaxedDP.setIncumbent(incumbent);
+                        relaxedDP.setInitialState(root);
+                        long start = System.nanoTime();
+                        State resultRelaxed = relaxedDP.solveRelaxed(relaxedWidth, relaxation);
+
+                        if (relaxation.expired()) {
+                            return; // cancelled by an exact restricted DD or interrupted by the deadline
+                        }
+
+                        this.compiled(roots, relaxedWidth, start, true, resultRelaxed == null || resultRelaxed.value() <= this.pruningBound());
+                        if (relaxedDP.isExact()) {
+                            this.offer(frontier, resultRelaxed);
+                            this.updateCache(state, resultRelaxed, incumbent);
+                        } else {
+                            this.branch(frontier, relaxedDP, roots, resultRelaxed, incumbent);
+                        }
+                        node.explored = true;
+                    } catch (OutOfMemoryError e) { // last resort, reported by the statistics
+                        this.outOfMemory(deadline); // the node is put back in the frontier
+                    } finally {
+                        node.finish();
+                    }
+                });
+
+                try {
+                    double incumbent = this.pruningBound();
+                    dp.setIncumbent(incumbent);
+                    dp.setInitialState(state);
+                    long start = System.nanoTime();
+                    State resultRestricted = dp.solveRestricted(restrictedWidth, deadline);
+
+                    if (deadline.expired()) {
+                        return;
+                    }
+
+                    this.compiled(roots, restrictedWidth, start, false, dp.isExact());
+                    this.offer(frontier, resultRestricted);
+
+                    if (dp.isExact()) {
+                        relaxation.cancel();
+                        this.updateCache(state, resultRestricted, incumbent);
+                        node.explored = true;
+                    }
+                } catch (OutOfMemoryError e) { // last resort, reported by the statistics
+                    this.outOfMemory(deadline);
+                    return;
+                } finally {
+                    node.finish();
+                }
+
+                await(previous, deadline);
+            }
+        } finally {
+            await(relaxing, deadline);
+            helper.shutdown();
+        }
+    }
+
+    /**
+     * Node explored in pipelined mode, released by the last of its two DDs to finish.
+     */
+    private class Exploration {
+
+        private final Frontier frontier;
+        private final State state;
+        private final AtomicInteger running;
+        private volatile boolean explored; // an exact DD or a relaxed DD was compiled entirely
+
+        Exploration(Frontier frontier, State state) {
+            this.frontier = frontier;
+            this.state = state;
+            this.running = new AtomicInteger(2);
+            this.explored = false;
+        }
+
+        /**
+         * Signals that one of the DDs of the node is over. Once both are, the node is put back
+         * in the frontier if the deadline interrupted its exploration.
+         */
+        void finish() {
+            if (this.running.decrementAndGet() == 0) {
+                if (!this.explored) {
+                    suspend(this.frontier, this.state);
+                }
+                this.frontier.done(this.state);
+            }
+        }
+    }
+
+    /**
+     * Waits for the relaxed DD compiled by the helper of a worker, rethrowing its failure.
+     * If the worker is interrupted, the deadline is cancelled and the worker keeps waiting.
+     *
+     * @param relaxing the compilation of the relaxed DD or {@code null}
+     * @param deadline the deadline of the slice
+     */
+    private static void await(Future<?> relaxing, Deadline deadline) {
+        if (relaxing == null) {
+            return;
+        }
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                relaxing.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+                deadline.cancel();
+            } catch (ExecutionException e) {
+                Throwable t = e.getCause();
+                if (t instanceof RuntimeException) {
+                    throw (RuntimeException) t;
+                } else if (t instanceof Error) {
+                    throw (Error) t;
+                }
+                throw new IllegalStateException(t);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return a DP owned by a worker
+     */
+    private DP dp() {
+        DP dp = new DP(this.problem, this.mergeSelector, this.deleteSelector, this.variableSelector);
+        dp.setPool(this.pool);
+        dp.setStreaming(this.streaming);
+        return dp;
+    }
+
+    /**
+     * Prepares a node polled from the frontier and tells if it has to be explored :
+     * the nodes dominated in the cache or whose bound cannot improve the incumbent are pruned.
+     *
+     * @param state the node polled
+     * @return {@code true} <==> the node has to be explored
+     */
+    private boolean admit(State state) {
+        if (this.codec != null) {
+            state.expand(this.codec);
+        }
+
+        if (this.cache != null) {
+            if (this.cache.prunes(state)) {
+                this.statistics.pruned(1);
+                return false;
+            }
+            this.cache.update(state, state.value()); // the nodes with the same state and a lower value are dominated
+        }
+
+        if (state.relaxedValue() <= this.pruningBound()) {
+            this.statistics.pruned(1);
+            return false;
+        }
+        this.statistics.explored();
+        return true;
+    }
+
+    /**
+     * Returns the width of a DD of a node given by the width selector, capped by the maximum width.
+     *
+     * @param state   the node
+     * @param relaxed {@code true} for the width of the relaxed DD, {@code false} for the restricted one
+     * @return the width of the DD of a single node
+     */
+    private int width(State state, boolean relaxed) {
+        int nFree = this.problem.nVariables() - state.layerNumber();
+        int width = relaxed ? this.widthSelector.relaxedWidth(state, nFree) : this.widthSelector.restrictedWidth(state, nFree);
+        return Math.max(1, Math.min(Math.min(this.maxWidth, this.memoryWidth(state, nFree)), width));
+    }
+
+    /**
+     * Returns the greatest width of a DD of a node that fits in the memory left, sharing it between the DDs
+     * that the workers compile at the same time. The states of all the layers are assumed to stay in memory.
+     *
+     * @param state the node
+     * @param nFree the number of variables not bound by the node
+     * @return the width that the memory allows, {@code Integer.MAX_VALUE} if the governor is disabled
+     */
+    private int memoryWidth(State state, int nFree) {
+        MemoryGovernor governor = this.governor;
+        if (governor == null) {
+            return Integer.MAX_VALUE;
+        }
+
+        long nDDs = (long) this.nThreads * (this.pipelining ? 2 : 1) * this.batchSize;
+        long bytes = Math.max(1, state.footprint()) * Math.max(1, nFree) * nDDs;
+        return (int) Math.min(Integer.MAX_VALUE, governor.headroom() / 2 / bytes);
+    }
+
+    /**
+     * Degrades the search while the heap is under pressure : the nodes are explored depth-first and,
+     * once per collection leaving the heap above the threshold, the frontier is purged and half of it is spilled.
+     * The search is stopped if the heap is nearly full.
+     *
+     * @param frontier the frontier shared by all the workers
+     * @param deadline the deadline of the slice
+     */
+    private void relieve(Frontier frontier, Deadline deadline) {
+        MemoryGovernor governor = this.governor;
+        if (governor == null) {
+            return;
+        }
+
+        frontier.setDepthFirst(governor.underPressure());
+        if (governor.shouldRelieve()) {
+            this.statistics.pruned(frontier.purge(this.pruningBound()));
+            frontier.shed();
+            this.statistics.relieved();
+        }
+        if (governor.isCritical()) {
+            deadline.cancel();
+        }
+    }
+
+    /**
+     * Stops the search when a DD runs out of memory although the governor bounds the widths of the DDs.
+     * This is only a last resort, the DD being unreachable once the error is caught : the search stops
+     * with its nodes in the frontier and the statistics tell that it ran out of memory.
+     *
+     * @param deadline the deadline of the slice
+     */
+    private void outOfMemory(Deadline deadline) {
+        deadline.cancel();
+        this.statistics.outOfMemory();
+    }
+
+    /**
+     * @param width the width of the DD of a single node
+     * @param roots the nodes compiled together, at the same layer
+     * @return the width of the DD of the nodes
+     */
+    private static int batchWidth(int width, List<State> roots) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) width * roots.size());
+    }
+
+    /**
+     * Records the width of a DD in the statistics and reports its result to the width selector.
+     *
+     * @param roots   the nodes compiled together
+     * @param width   the width of the DD of a single node
+     * @param start   the value of {@code System.nanoTime} when the compilation started
+     * @param relaxed {@code true} for a relaxed DD, {@code false} for a restricted one
+     * @param result  {@code true} <==> the restricted DD was exact or the relaxed DD pruned the nodes
+     */
+    private void compiled(List<State> roots, int width, long start, boolean relaxed, boolean result) {
+        long time = (System.nanoTime() - start) / roots.size();
+        this.statistics.compiled(roots.get(0).layerNumber(), width, relaxed);
+        if (relaxed) {
+            this.widthSelector.relaxedCompiled(roots.get(0), width, time, result);
+        } else {
+            this.widthSelector.restrictedCompiled(roots.get(0), width, time, result);
+        }
+    }
+
+    /**
+     * Makes a solution the incumbent if it is better, then prunes the frontier and reports it.
+     *
+     * @param frontier the frontier shared by all the workers
+     * @param solution the result of a restricted or exact DD, {@code null} if all the states were discarded
+     */
+    private void offer(Frontier frontier, State solution) {
+        if (this.improve(solution)) {
+            this.statistics.pruned(frontier.purge(this.pruningBound()));
+            this.solutionFound(solution);
+        }
+    }
+
+    /**
+     * Pushes the exact cutset of a relaxed DD in the frontier if the relaxed DD can improve the incumbent,
+     * otherwise raises the threshold of the nodes. The threshold of a node whose own bound cannot improve
+     * the incumbent is raised as well.
+     *
+     * @param frontier  the frontier shared by all the workers
+     * @param dp        the DP that compiled the relaxed DD
+     * @param roots     the nodes explored
+     * @param relaxed   the result of the relaxed DD, {@code null} if all the states were discarded
+     * @param incumbent the value of the incumbent given to the DP
+     */
+    private void branch(Frontier frontier, DP dp, List<State> roots, State relaxed, double incumbent) {
+        if (relaxed != null && relaxed.value() > this.pruningBound()) {
+            for (State root : roots) {
+                double bound = dp.localBound(root);
+                if (bound <= this.pruningBound()) {
+                    this.updateCache(root, bound, incumbent);
+                }
+            }
+
+            List<State> cutset = new ArrayList<>();
+            for (State s : dp.exactCutset()) {
+                if (s.relaxedValue() > this.pruningBound()) { // the local bound computed by the relaxed DD
+                    if (this.codec != null) {
+                        s.compact(this.codec);
+                    } else {
+                        s.exactParents().clear(); // not needed in the frontier -> garbage collection
+                    }
+                    cutset.add(s);
+                }
+            }
+            frontier.pushAll(cutset);
+        } else {
+            for (State root : roots) {
+                this.updateCache(root, relaxed, incumbent);
+            }
+        }
+    }
+
+    /**
+     * Stops the search when the deadline interrupts the exploration of a batch of nodes.
+     *
+     * @param frontier the frontier shared by all the workers
+     * @param states   the nodes being explored
+     */
+    private void suspend(Frontier frontier, List<State> states) {
+        for (State state : states) {
+            this.suspend(frontier, state);
+        }
+    }
+
+    /**
+     * Stops the search when the deadline interrupts the exploration of a node : the DDs of the node
+     * may be incomplete, the node is thus put back in the frontier to be explored again if the search is resumed.
+     * The threshold recorded by {@code admit} is forgotten, otherwise the node would prune itself when polled again.
+     *
+     * @param frontier the frontier shared by all the workers
+     * @param state    the node being explored
+     */
+    private void suspend(Frontier frontier, State state) {
+        frontier.close();
+        if (this.cache != null && state.stateRepresentation != null) { // a compact node was not admitted
+            this.cache.remove(state);
+        }
+        if (this.codec != null) {
+            frontier.push(state.compactCopy(this.codec)); // the state may be the root shared with the problem
+        } else {
+            state.exactParents().clear();
+            frontier.push(state);
+        }
+    }
+
+    /**
+     * Raises the threshold of an explored state once its best completion is known not to improve the incumbent.
+     * The completions discarded by the rough upper bound of the problem are worth at most the incumbent given to the DP.
+     *
+     * @param state     the state explored
+     * @param result    the result of an exact restricted DD or of a relaxed DD, {@code null} if all the states were discarded
+     * @param incumbent the value of the incumbent given to the DP
+     */
+    private void updateCache(State state, State result, double incumbent) {
+        this.updateCache(state, result == null ? Double.NEGATIVE_INFINITY : result.value(), incumbent);
+    }
+
+    /**
+     * Raises the threshold of an explored state given a bound on the value of its best completion.
+     *
+     * @param state     the state explored
+     * @param bound     an upper bound on the value of the best completion of the state that is not discarded by the DP
+     * @param incumbent the value of the incumbent given to the DP
+     */
+    private void updateCache(State state, double bound, double incumbent) {
+        if (this.cache == null) {
+            return;
+        }
+
+        double best = Math.max(bound, incumbent);
+        this.cache.update(state, state.value() + this.pruningBound() - best);
+    }
+
+    /**
+     * @return the incumbent solution shared by all the workers, {@code null} if no solution was found
+     */
+    State incumbent() {
+        return this.best.get();
+    }
+
+    /**
+     * Returns the value under which the nodes are pruned : the value of the incumbent plus the tolerance.
+     * The nodes pruned cannot lead to a solution better than this value.
+     *
+     * @return the value of the incumbent plus the tolerance, {@code -Double.MAX_VALUE} if no solution was found
+     */
+    private double pruningBound() {
+        State best = this.best.get();
+        if (best == null) {
+            return -Double.MAX_VALUE;
+        }
+        return best.value() + Math.max(this.relativeTolerance * Math.abs(best.value()), this.absoluteTolerance);
+    }
+
+    /**
+     * Returns an upper bound on the optimal value : the greatest relaxed value of the nodes left to explore,
+     * or the pruning bound if it is greater.
+     * The least bound read during the session is returned if it is smaller, since it remains valid.
+     * In particular, the bound does not jump to infinity when the frontier cannot be read because
+     * the nodes keep moving.
+     *
+     * @param frontier the frontier of the search
+     * @return an upper bound on the optimal value, {@code Double.POSITIVE_INFINITY} if none was read yet
+     */
+    synchronized double upperBound(Frontier frontier) {
+        double pruned = this.pruningBound();
+        double upperBound = frontier.isExhausted() ? pruned : Math.max(pruned, frontier.bestBound());
+        this.upperBound = Math.min(this.upperBound, upperBound);
+        return this.upperBound;
+    }
+
+    /**
+     * Returns the value of the incumbent solution, shared by all the workers.
+     *
+     * @return the value of the best solution found so far
+     */
+    private double bestBound() {
+        State best = this.best.get();
+        return best == null ? -Double.MAX_VALUE : best.value();
+    }
+
+    /**
+     * Replaces the incumbent solution if the given one is better, without locking.
+     *
+     * @param candidate a feasible solution
+     * @return {@code true} <==> the candidate is the new incumbent solution
+     */
+    private boolean improve(State candidate) {
+        if (candidate == null) {
+            return false;
+        }
+
+        while (true) {
+            State best = this.best.get();
+            if (best != null && candidate.value() <= best.value()) {
+                return false;
+            }
+            if (this.best.compareAndSet(best, candidate)) {
+                return true;
+            }
+        }
     }
 }
@@ -0,0 +1,41 @@
+package core;
+
+/**
+ * Listener of the progress of a search, registered with {@code Solver.addListener}.
+ * The events are delivered in order by a single thread of the solver, asynchronously with respect
+ * to the workers which therefore never wait for a listener.
+ *
+ * @author Vianney Coppé
+ */
+public interface SolverListener {
+
+    /**
+     * Called for every improvement of the incumbent solution.
+     *
+     * @param value      the value of the new incumbent
+     * @param assignment the variables of the new incumbent with their value
+     * @param elapsed    the time spent by the search in milliseconds
+     */
+    default void solutionFound(double value, Variable[] assignment, long elapsed) {
+    }
+
+    /**
+     * Called when the upper bound on the optimal value is improved, the bound being checked periodically.
+     *
+     * @param upperBound the greatest relaxed value of the nodes left to explore, or the value of the incumbent
+     *                   if it is greater
+     * @param elapsed    the time spent by the search in milliseconds
+     */
+    default void boundImproved(double upperBound, long elapsed) {
+    }
+
+    /**
+     * Called when the workers stop, at the end of a slice of a session or of the search.
+     *
+     * @param lowerBound the value of the incumbent, {@code -Double.MAX_VALUE} if no solution was found
+     * @param upperBound the upper bound on the optimal value
+     * @param elapsed    the time spent by the search in milliseconds
+     */
+    default void stopped(double lowerBound, double upperBound, long elapsed) {
+    }
+}
@@ -0,0 +1,269 @@
+package core;
+
+import dp.State;
+import dp.StateCodec;
+import utils.Selection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Storage on disk of the nodes spilled from the frontier when it outgrows its memory budget.
+ * The encoded nodes are appended to memory-mapped segment files while their bounds and positions
+ * are kept in memory, so that the best nodes can be reloaded and the pruned ones discarded
+ * without reading the disk. A segment file is deleted as soon as all its nodes are gone,
+ * and the files left are deleted when the store is closed with its session.
+ *
+ * @author Vianney Coppé
+ */
+class SpillStore {
+
+    static final int SEGMENT_SIZE = 1 << 26;
+
+    private final File directory;
+    private final int segmentSize;
+    private final StateCodec codec;
+    private final State root;
+
+    private final List<Segment> segments;
+    private Segment current;
+
+    private double[] bounds;
+    private long[] positions; // segment index in the high 32 bits, offset in the low ones
+    private int size;
+    private double maxBound;
+
+    /**
+     * Returns an empty store.
+     *
+     * @param directory   the directory in which the segment files are created
+     * @param segmentSize the size in bytes of a segment file
+     * @param codec       the codec of the problem, encoding the representations of the nodes
+     * @param root        the root of the problem, from which the decisions of the nodes were taken
+     */
+    SpillStore(File directory, int segmentSize, StateCodec codec, State root) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.codec = codec;
+        this.root = root;
+        this.segments = new ArrayList<>();
+        this.bounds = new double[16];
+        this.positions = new long[16];
+        this.size = 0;
+        this.maxBound = -Double.MAX_VALUE;
+    }
+
+    /**
+     * Writes the nodes to disk.
+     *
+     * @param states the nodes spilled from the frontier
+     */
+    synchronized void write(List<State> states) {
+        for (State state : states) {
+            byte[] bytes = state.encode(this.codec);
+            if (this.current == null || this.current.buffer.remaining() < Integer.BYTES + bytes.length) {
+                Segment full = this.current;
+                this.current = this.open(Math.max(this.segmentSize, Integer.BYTES + bytes.length));
+                if (full != null && full.live == 0) {
+                    full.delete();
+                    this.segments.set(full.index, null);
+                }
+            }
+
+            int offset = this.current.buffer.position();
+            this.current.buffer.putInt(bytes.length);
+            this.current.buffer.put(bytes);
+            this.current.live++;
+
+            if (this.size == this.bounds.length) {
+                this.bounds = Arrays.copyOf(this.bounds, 2 * this.size);
+                this.positions = Arrays.copyOf(this.positions, 2 * this.size);
+            }
+            this.bounds[this.size] = state.relaxedValue();
+            this.positions[this.size] = ((long) this.current.index << 32) | offset;
+            this.size++;
+            this.maxBound = Math.max(this.maxBound, state.relaxedValue());
+        }
+    }
+
+    /**
+     * Removes the nodes with the greatest bounds from the store and returns them.
+     * The nodes are compact, {@code expand} should be called before using them in a DD.
+     *
+     * @param n the maximum number of nodes to read
+     * @return the nodes read, in no particular order
+     */
+    synchronized List<State> read(int n) {
+        n = Math.min(n, this.size);
+        List<State> states = new ArrayList<>(n);
+        if (n == 0) {
+            return states;
+        }
+
+        double[] keys = new double[this.size];
+        for (int i = 0; i < this.size; i++) {
+            keys[i] = -this.bounds[i];
+        }
+        int[] ids = Selection.least(keys, this.size, n);
+
+        for (int id : ids) {
+            long position = this.positions[id];
+            Segment segment = this.segments.get((int) (position >>> 32));
+            int offset = (int) position;
+
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(offset);
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            states.add(State.decode(bytes, this.root));
+            this.release(segment);
+        }
+
+        // removes the entries read, from the last one so that the swapped entries are not read
+        Arrays.sort(ids);
+        for (int i = ids.length - 1; i >= 0; i--) {
+            this.size--;
+            this.bounds[ids[i]] = this.bounds[this.size];
+            this.positions[ids[i]] = this.positions[this.size];
+        }
+        this.refresh();
+
+        return states;
+    }
+
+    /**
+     * Discards the nodes whose bound is not greater than the given value, without reading them.
+     *
+     * @param threshold the value below which the nodes are discarded
+     * @return the number of nodes discarded
+     */
+    synchronized int removeBelow(double threshold) {
+        if (this.maxBound <= threshold) {
+            int removed = this.size;
+            for (int i = 0; i < this.size; i++) {
+                this.release(this.segments.get((int) (this.positions[i] >>> 32)));
+            }
+            this.size = 0;
+            this.refresh();
+            return removed;
+        }
+
+        int n = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (this.bounds[i] > threshold) {
+                this.bounds[n] = this.bounds[i];
+                this.positions[n] = this.positions[i];
+                n++;
+            } else {
+                this.release(this.segments.get((int) (this.positions[i] >>> 32)));
+            }
+        }
+        int removed = this.size - n;
+        this.size = n;
+        this.refresh();
+        return removed;
+    }
+
+    /**
+     * Returns the encoded nodes of the store without reading them : each buffer is positioned at the length
+     * of a record, followed by the bytes of the node. The segment files can be deleted but remain mapped
+     * until the buffers are released, and the records are never overwritten.
+     *
+     * @return a buffer for each node in the store
+     */
+    synchronized List<ByteBuffer> records() {
+        List<ByteBuffer> records = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            ByteBuffer buffer = this.segments.get((int) (this.positions[i] >>> 32)).buffer.duplicate();
+            buffer.position((int) this.positions[i]);
+            records.add(buffer);
+        }
+        return records;
+    }
+
+    /**
+     * @return the number of nodes in the store
+     */
+    synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the maximum bound of the nodes in the store
+     */
+    synchronized double maxBound() {
+        return this.maxBound;
+    }
+
+    /**
+     * Discards all the nodes and deletes the segment files.
+     */
+    synchronized void close() {
+        for (Segment segment : this.segments) {
+            if (segment != null) {
+                segment.delete();
+            }
+        }
+        this.segments.clear();
+        this.current = null;
+        this.size = 0;
+        this.maxBound = -Double.MAX_VALUE;
+    }
+
+    private void refresh() {
+        double max = -Double.MAX_VALUE;
+        for (int i = 0; i < this.size; i++) {
+            max = Math.max(max, this.bounds[i]);
+        }
+        this.maxBound = max;
+    }
+
+    private Segment open(int capacity) {
+        try {
+            File file = File.createTempFile("frontier-", ".seg", this.directory);
+            Segment segment = new Segment(this.segments.size(), file, capacity);
+            this.segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create a segment file in " + this.directory, e);
+        }
+    }
+
+    private void release(Segment segment) {
+        segment.live--;
+        if (segment.live == 0 && segment != this.current) {
+            segment.delete();
+            this.segments.set(segment.index, null);
+        }
+    }
+
+    private static final class Segment {
+
+        final int index;
+        final File file;
+        final MappedByteBuffer buffer;
+        int live; // the number of nodes of the segment still in the store
+
+        Segment(int index, File file, int capacity) throws IOException {
+            this.index = index;
+            this.file = file;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+            this.live = 0;
+        }
+
+        void delete() {
+            // the mapping is released by the garbage collector, the file can be unlinked before
+            this.file.delete();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package core;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a search shared by the workers of the {@code Solver}.
+ * The time only runs while the workers are exploring the nodes, and the counters
+ * of a resumed search start from the values saved in its checkpoint.
+ * The widths of the DDs are also recorded by depth of the nodes they are compiled from,
+ * the width selector being allowed to choose different widths at different depths.
+ *
+ * @author Vianney Coppé
+ */
+public class Statistics {
+
+    private final LongAdder explored;
+    private final LongAdder pruned;
+    private final LongAdder restrictedWidths; // the sum of the widths of the restricted DDs compiled
+    private final LongAdder restrictedDDs;
+    private final LongAdder relaxedWidths;
+    private final LongAdder relaxedDDs;
+    private Widths[] restrictedByDepth; // guarded by this
+    private Widths[] relaxedByDepth;    // guarded by this
+    private final LongAdder reliefs; // the number of times the memory governor degraded the search
+    private volatile boolean outOfMemory;
+    private long elapsedBefore;
+    private long startTime; // -1 while the workers are stopped
+
+    /**
+     * Returns the statistics of a new search.
+     */
+    Statistics() {
+        this(0, 0, 0);
+    }
+
+    /**
+     * Returns the statistics of a search resumed with the given counters.
+     *
+     * @param explored the number of nodes already explored
+     * @param pruned   the number of nodes already pruned
+     * @param elapsed  the time already spent in milliseconds
+     */
+    Statistics(long explored, long pruned, long elapsed) {
+        this.explored = new LongAdder();
+        this.explored.add(explored);
+        this.pruned = new LongAdder();
+        this.pruned.add(pruned);
+        this.restrictedWidths = new LongAdder();
+        this.restrictedDDs = new LongAdder();
+        this.relaxedWidths = new LongAdder();
+        this.relaxedDDs = new LongAdder();
+        this.restrictedByDepth = new Widths[0];
+        this.relaxedByDepth = new Widths[0];
+        this.reliefs = new LongAdder();
+        this.elapsedBefore = elapsed;
+        this.startTime = -1;
+    }
+
+    synchronized void start() {
+        this.startTime = System.currentTimeMillis();
+    }
+
+    synchronized void stop() {
+        this.elapsedBefore = this.elapsed();
+        this.startTime = -1;
+    }
+
+    void explored() {
+        this.explored.increment();
+    }
+
+    void pruned(int n) {
+        this.pruned.add(n);
+    }
+
+    /**
+     * @param depth   the number of variables bound by the nodes the DD is compiled from
+     * @param width   the width of the DD of a single node
+     * @param relaxed {@code true} for a relaxed DD, {@code false} for a restricted one
+     */
+    void compiled(int depth, int width, boolean relaxed) {
+        if (relaxed) {
+            this.relaxedWidths.add(width);
+            this.relaxedDDs.increment();
+        } else {
+            this.restrictedWidths.add(width);
+            this.restrictedDDs.increment();
+        }
+
+        synchronized (this) {
+            Widths[] byDepth = relaxed ? this.relaxedByDepth : this.restrictedByDepth;
+            if (depth >= byDepth.length) {
+                byDepth = Arrays.copyOf(byDepth, Math.max(depth + 1, 2 * byDepth.length));
+                if (relaxed) {
+                    this.relaxedByDepth = byDepth;
+                } else {
+                    this.restrictedByDepth = byDepth;
+                }
+            }
+            if (byDepth[depth] == null) {
+                byDepth[depth] = new Widths();
+            }
+            byDepth[depth].add(width);
+        }
+    }
+
+    void relieved() {
+        this.reliefs.increment();
+    }
+
+    void outOfMemory() {
+        this.outOfMemory = true;
+    }
+
+    /**
+     * @return the number of nodes whose DDs were compiled
+     */
+    public long nodesExplored() {
+        return this.explored.sum();
+    }
+
+    /**
+     * @return the number of nodes discarded by the incumbent or the cache of thresholds before being explored
+     */
+    public long nodesPruned() {
+        return this.pruned.sum();
+    }
+
+    /**
+     * @return the mean width of the restricted DDs compiled since the search started or was resumed,
+     * {@code 0} if none was compiled
+     */
+    public double meanRestrictedWidth() {
+        long n = this.restrictedDDs.sum();
+        return n == 0 ? 0 : (double) this.restrictedWidths.sum() / n;
+    }
+
+    /**
+     * @return the mean width of the relaxed DDs compiled since the search started or was resumed,
+     * {@code 0} if none was compiled
+     */
+    public double meanRelaxedWidth() {
+        long n = this.relaxedDDs.sum();
+        return n == 0 ? 0 : (double) this.relaxedWidths.sum() / n;
+    }
+
+    /**
+     * @return the greatest depth of the nodes from which a DD was compiled since the search started or was resumed,
+     * {@code -1} if none was compiled
+     */
+    public synchronized int maxDepth() {
+        return Math.max(depth(this.restrictedByDepth), depth(this.relaxedByDepth));
+    }
+
+    /**
+     * @param depth the number of variables bound by the nodes
+     * @return the widths of the restricted DDs compiled from the nodes at this depth since the search started
+     * or was resumed, {@code null} if none was compiled
+     */
+    public synchronized Widths restrictedWidths(int depth) {
+        return widths(this.restrictedByDepth, depth);
+    }
+
+    /**
+     * @param depth the number of variables bound by the nodes
+     * @return the widths of the relaxed DDs compiled from the nodes at this depth since the search started
+     * or was resumed, {@code null} if none was compiled
+     */
+    public synchronized Widths relaxedWidths(int depth) {
+        return widths(this.relaxedByDepth, depth);
+    }
+
+    private static Widths widths(Widths[] byDepth, int depth) {
+        return depth >= 0 && depth < byDepth.length && byDepth[depth] != null ? byDepth[depth].copy() : null;
+    }
+
+    private static int depth(Widths[] byDepth) {
+        for (int depth = byDepth.length - 1; depth >= 0; depth--) {
+            if (byDepth[depth] != null) {
+                return depth;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of times the heap was relieved since the search started or was resumed :
+     * the frontier was purged and spilled after a collection leaving the heap under pressure
+     */
+    public long memoryReliefs() {
+        return this.reliefs.sum();
+    }
+
+    /**
+     * @return {@code true} <==> a DD ran out of memory despite the memory governor since the search started
+     * or was resumed, the search was then stopped as a last resort and its nodes kept in the frontier
+     */
+    public boolean ranOutOfMemory() {
+        return this.outOfMemory;
+    }
+
+    /**
+     * @return the time spent exploring the nodes in milliseconds, including the time before the search was resumed
+     */
+    public synchronized long elapsed() {
+        return this.startTime < 0 ? this.elapsedBefore : this.elapsedBefore + System.currentTimeMillis() - this.startTime;
+    }
+
+    public String toString() {
+        return "explored : " + this.nodesExplored() + ", pruned : " + this.nodesPruned()
+                + ", widths : " + Math.round(this.meanRestrictedWidth()) + " / " + Math.round(this.meanRelaxedWidth())
+                + ", time : " + this.elapsed() + " ms" + (this.outOfMemory ? ", out of memory" : "");
+    }
+
+    /**
+     * Widths of the DDs compiled from the nodes at a given depth.
+     */
+    public static final class Widths {
+
+        private long count;
+        private long sum;
+        private int min;
+        private int max;
+
+        private Widths() {
+            this.count = 0;
+            this.sum = 0;
+            this.min = Integer.MAX_VALUE;
+            this.max = 0;
+        }
+
+        private void add(int width) {
+            this.count++;
+            this.sum += width;
+            this.min = Math.min(this.min, width);
+            this.max = Math.max(this.max, width);
+        }
+
+        private Widths copy() {
+            Widths copy = new Widths();
+            copy.count = this.count;
+            copy.sum = this.sum;
+            copy.min = this.min;
+            copy.max = this.max;
+            return copy;
+        }
+
+        /**
+         * @return the number of DDs compiled
+         */
+        public long count() {
+            return this.count;
+        }
+
+        /**
+         * @return the smallest width of the DDs
+         */
+        public int min() {
+            return this.min;
+        }
+
+        /**
+         * @return the greatest width of the DDs
+         */
+        public int max() {
+            return this.max;
+        }
+
+        /**
+         * @return the mean width of the DDs
+         */
+        public double mean() {
+            return (double) this.sum / this.count;
+        }
+
+        public String toString() {
+            return this.min + " / " + Math.round(this.mean()) + " / " + this.max;
+        }
+    }
+}
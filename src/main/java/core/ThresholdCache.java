@@ -0,0 +1,220 @@
+package core;
+
+import dp.State;
+import dp.StateRepresentation;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of thresholds of the exact states already reached by the branch and bound,
+ * keyed by their {@code StateRepresentation}, layer and bound variables.
+ * The bound variables are part of the key since, with a dynamic variable order, two nodes at the same layer
+ * with the same representation may bind different variables and thus lead to different subproblems.
+ * A node whose value is not greater than the threshold of its state cannot lead to a better solution
+ * than the ones already found or being explored, and can be pruned before its DDs are compiled.
+ * The entries are split in segments, each one locked independently and evicting its least recently used
+ * entries once the estimated memory of its entries exceeds its share of the size of the cache,
+ * so that the cache can be shared by the workers.
+ *
+ * @author Vianney Coppé
+ */
+public class ThresholdCache {
+
+    private static final int SEGMENTS = 16;
+    private static final long ENTRY_FOOTPRINT = 96; // the key, the threshold and the entry of the map, in bytes
+
+    private final Segment[] segments;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * Returns an empty cache.
+     *
+     * @param size the maximum number of bytes used by the entries of the cache,
+     *             estimated from the footprint of their representations
+     */
+    ThresholdCache(long size) {
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment(Math.max(1, size / SEGMENTS));
+        }
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /**
+     * Returns a {@code boolean} telling if the value of the state is not greater than the threshold of its state.
+     *
+     * @param state an exact state
+     * @return {@code true} <==> the state cannot lead to a better solution
+     */
+    boolean prunes(State state) {
+        Key key = new Key(state.stateRepresentation, state.layerNumber(), state.boundVariables());
+        Segment segment = this.segment(key);
+
+        Double threshold;
+        synchronized (segment) {
+            threshold = segment.get(key);
+        }
+
+        if (threshold != null && state.value() <= threshold) {
+            this.hits.increment();
+            return true;
+        }
+        this.misses.increment();
+        return false;
+    }
+
+    /**
+     * Raises the threshold of the state to the given value.
+     *
+     * @param state     an exact state
+     * @param threshold a value such that any node of this state with a value not greater cannot lead to a better solution
+     */
+    void update(State state, double threshold) {
+        Key key = new Key(state.stateRepresentation, state.layerNumber(), state.boundVariables());
+        Segment segment = this.segment(key);
+
+        synchronized (segment) {
+            segment.raise(key, threshold);
+        }
+    }
+
+    /**
+     * Forgets the threshold of the state, which may have been raised by the node itself
+     * before its exploration was interrupted.
+     *
+     * @param state an exact state
+     */
+    void remove(State state) {
+        Key key = new Key(state.stateRepresentation, state.layerNumber(), state.boundVariables());
+        Segment segment = this.segment(key);
+
+        synchronized (segment) {
+            segment.forget(key);
+        }
+    }
+
+    private Segment segment(Key key) {
+        return this.segments[(int) (key.hash >>> 60) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * @return the number of states pruned by the cache
+     */
+    public long hits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return the number of states looked up and not pruned by the cache
+     */
+    public long misses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return the number of states in the cache
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the estimated number of bytes used by the entries of the cache
+     */
+    public long footprint() {
+        long footprint = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                footprint += segment.footprint;
+            }
+        }
+        return footprint;
+    }
+
+    private static final class Key {
+
+        final StateRepresentation stateRepresentation;
+        final int layerNumber;
+        final BitSet boundVariables;
+        final long hash;
+
+        Key(StateRepresentation stateRepresentation, int layerNumber, BitSet boundVariables) {
+            this.stateRepresentation = stateRepresentation;
+            this.layerNumber = layerNumber;
+            this.boundVariables = boundVariables;
+            this.hash = (stateRepresentation.longHashCode() * 31 + layerNumber) * 31 + boundVariables.hashCode();
+        }
+
+        /**
+         * @return the estimated number of bytes of the entry of this key
+         */
+        long footprint() {
+            return ENTRY_FOOTPRINT + this.stateRepresentation.footprint() + this.boundVariables.size() / 8;
+        }
+
+        public int hashCode() {
+            return (int) (this.hash ^ (this.hash >>> 32));
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) o;
+            return this.layerNumber == other.layerNumber && this.stateRepresentation.equals(other.stateRepresentation)
+                    && this.boundVariables.equals(other.boundVariables);
+        }
+    }
+
+    private static final class Segment extends LinkedHashMap<Key, Double> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long capacity;
+        private long footprint; // the estimated number of bytes of the entries
+
+        Segment(long capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.footprint = 0;
+        }
+
+        /**
+         * Raises the threshold of a key, then evicts the least recently used entries while the segment is too large.
+         * The most recent entry is kept even if it is larger than the segment.
+         */
+        void raise(Key key, double threshold) {
+            Double previous = this.get(key);
+            if (previous == null) {
+                this.put(key, threshold);
+                this.footprint += key.footprint();
+            } else if (threshold > previous) {
+                this.put(key, threshold);
+            }
+
+            Iterator<Key> eldest = this.keySet().iterator();
+            while (this.footprint > this.capacity && this.size() > 1) {
+                this.footprint -= eldest.next().footprint();
+                eldest.remove();
+            }
+        }
+
+        void forget(Key key) {
+            if (this.remove(key) != null) {
+                this.footprint -= key.footprint();
+            }
+        }
+    }
+}
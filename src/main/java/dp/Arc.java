@@ -0,0 +1,25 @@
+package dp;
+
+/**
+ * Arc of a relaxed DD, kept in the list of incoming arcs of its head so that
+ * the best completion of each node can be computed bottom-up once the DD is compiled.
+ *
+ * @author Vianney Coppé
+ */
+final class Arc {
+
+    final State parent;
+    final double cost;
+    final Arc next;
+
+    /**
+     * @param parent the node of the previous layer the arc comes from
+     * @param cost   the value gained along the arc
+     * @param next   the next incoming arc of the same node or {@code null}
+     */
+    Arc(State parent, double cost, Arc next) {
+        this.parent = parent;
+        this.cost = cost;
+        this.next = next;
+    }
+}
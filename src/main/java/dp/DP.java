@@ -4,10 +4,18 @@ import core.Problem;
 import heuristics.DeleteSelector;
 import heuristics.MergeSelector;
 import heuristics.VariableSelector;
+import utils.Deadline;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Represents the DP graph.
@@ -19,14 +27,22 @@ import java.util.Set;
  */
 public class DP {
 
+    private static final int STREAMING_SLACK = 8; // a streamed layer may exceed the width by width / STREAMING_SLACK
+
     private Layer root;
     private Layer lastExactLayer;
+    private List<Layer> prefix; // the exact layers compiled by the restricted DD that the relaxed DD can start from
     private Set<State> frontier;
     private boolean exact;
     private Problem problem;
     private MergeSelector mergeSelector;
     private DeleteSelector deleteSelector;
     private VariableSelector variableSelector;
+    private ForkJoinPool pool;
+    private boolean streaming;
+    private double incumbent = -Double.MAX_VALUE;
+    private State pending;
+    private Deadline deadline = Deadline.none();
 
     /**
      * Returns the DP representation of the problem.
@@ -67,32 +83,137 @@ public class DP {
      */
     public void setInitialState(State initialState) {
         this.root = new Layer(this.problem, this.variableSelector, initialState, initialState.layerNumber());
+        this.root.setPool(this.pool);
+        this.root.setIncumbent(this.incumbent);
         this.lastExactLayer = null;
+        this.releasePrefix();
         this.exact = true;
     }
 
+    /**
+     * Sets the initial states of the DP representation, which all start the first layer.
+     * The states should bind the same variables. The states with the same {@code StateRepresentation}
+     * are merged into the best of them.
+     *
+     * @param initialStates the states where to start the layers
+     * @see State#bindsSameVariables(State)
+     */
+    public void setInitialStates(List<State> initialStates) {
+        State first = initialStates.get(0);
+        this.setInitialState(first);
+        for (int i = 1; i < initialStates.size(); i++) {
+            this.root.addState(initialStates.get(i));
+        }
+    }
+
+    /**
+     * Sets the pool used to generate the successors of the wide layers in parallel.
+     * The {@code Problem} implementation should then support concurrent calls to {@code successors}.
+     *
+     * @param pool a fork-join pool or {@code null} to generate the successors sequentially
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+        this.root.setPool(pool);
+    }
+
+    /**
+     * Sets the value of the best solution known.
+     * The states whose value plus their {@code Problem.roughUpperBound} cannot beat it are discarded
+     * while the DDs are compiled, the solvers then return {@code null} if no state is left.
+     *
+     * @param incumbent the value of the incumbent solution
+     */
+    public void setIncumbent(double incumbent) {
+        this.incumbent = incumbent;
+        this.root.setIncumbent(incumbent);
+    }
+
+    /**
+     * Enables the streaming compilation of the layers : a layer is trimmed while it is built
+     * as soon as it exceeds the width by a small slack, instead of once all its states are generated.
+     * The peak size of a layer is then close to the width instead of the number of successors of the previous layer.
+     * In a relaxed DD, the states selected for merging are folded with {@code Problem.merge} into a merged
+     * state that is added once the layer is complete. This gives the same relaxation as merging them at once
+     * as long as merging the merged state with other states is equivalent to merging all the states together,
+     * as it is the case for the problems in the examples.
+     * Wide layers expanded in parallel are trimmed once complete.
+     *
+     * @param streaming {@code true} to trim the layers while they are built, {@code false} by default
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     /**
      * Solves the given problem starting from the given node with layers of at most {@code width}
      * states by deleting some states and thus providing a feasible solution.
      *
      * @param width the maximum width of the layers
-     * @return the {@code State} object representing the best solution found
+     * @return the {@code State} object representing the best solution found,
+     * {@code null} if no state can improve the incumbent
      */
     public State solveRestricted(int width, long startTime, int timeOut) {
+        return this.solveRestricted(width, deadline(startTime, timeOut));
+    }
+
+    /**
+     * Solves the given problem starting from the given node with layers of at most {@code width}
+     * states by deleting some states, stopping as soon as the deadline is reached.
+     * The deadline is checked while the layers are expanded and trimmed, the result is then the
+     * best state of the last complete layer.
+     * The layers before the first one that has to be trimmed are the same in a relaxed DD
+     * as long as they are not wider than its width : they are kept so that the next call to {@code solveRelaxed}
+     * with the same initial state starts from the last of them instead of the initial state.
+     *
+     * @param width    the maximum width of the layers
+     * @param deadline the deadline of the compilation
+     * @return the {@code State} object representing the best solution found,
+     * {@code null} if no state can improve the incumbent
+     */
+    public State solveRestricted(int width, Deadline deadline) {
+        this.deadline = deadline;
         this.lastExactLayer = null;
+        this.releasePrefix();
+        this.root.setArcs(true); // the arcs of the prefix are needed by the relaxed DD
+        this.root.setDeadline(deadline);
         Layer lastLayer = root;
+        this.prefix = new ArrayList<>();
+        this.prefix.add(lastLayer);
+        boolean shared = true;
+        int limit = this.limit(width);
+        Consumer<Layer> delete = layer -> this.delete(layer, width);
 
         while (!lastLayer.isFinal()) {
-            if (System.currentTimeMillis() - startTime > timeOut * 1000) {
+            if (deadline.expired()) {
                 return lastLayer.best();
             }
 
-            lastLayer = lastLayer.nextLayer();
+            Layer next = lastLayer.nextLayer(limit, delete);
+            if (deadline.expired()) {
+                return lastLayer.best(); // the next layer may be incomplete
+            }
+
+            if (shared) {
+                if (this.exact && next.width() <= width) {
+                    this.prefix.add(next);
+                } else { // the relaxed DD differs from this layer on
+                    this.clearArcs(Collections.singletonList(next));
+                    next.setArcs(false);
+                    shared = false;
+                }
+            }
+            lastLayer = next;
+
+            if (lastLayer.width() == 0) {
+                if (shared) {
+                    this.releasePrefix(); // the DD is exact, the relaxed DD is not needed
+                }
+                return null; // no state can improve the incumbent
+            }
 
             if (lastLayer.width() > width) {
-                State[] toRemove = this.deleteSelector.select(lastLayer, lastLayer.width() - width);
-                lastLayer.removeStates(toRemove);
-                this.exact = false;
+                this.delete(lastLayer, width);
             }
 
             if (!lastLayer.isExact()) {
@@ -100,38 +221,101 @@ public class DP {
             }
         }
 
+        if (shared) {
+            this.releasePrefix(); // the DD is exact, the relaxed DD is not needed
+        }
         return lastLayer.best();
     }
 
     /**
      * Solves the given problem starting from the given node with layers of at most {@code width}
      * states by merging some states and thus providing a solution not always feasible.
+     * The relaxed value of each state of the exact cutset is set to the value of the best path
+     * of the relaxed DD going through this state.
      *
      * @param width the maximum width of the layers
-     * @return the {@code State} object representing the best solution found
+     * @return the {@code State} object representing the best solution found,
+     * {@code null} if no state can improve the incumbent
      */
     public State solveRelaxed(int width, long startTime, int timeOut) {
+        return this.solveRelaxed(width, deadline(startTime, timeOut));
+    }
+
+    /**
+     * Solves the given problem starting from the given node with layers of at most {@code width}
+     * states by merging some states, stopping as soon as the deadline is reached.
+     * The deadline is checked while the layers are expanded and merged, the result and the exact
+     * cutset are then those of an incomplete DD and do not give a bound.
+     * If the last call to {@code solveRestricted} was made with the same initial state, the compilation starts
+     * from the last layer of the exact prefix shared with the restricted DD that is not wider than {@code width}.
+     *
+     * @param width    the maximum width of the layers
+     * @param deadline the deadline of the compilation
+     * @return the {@code State} object representing the best solution found,
+     * {@code null} if no state can improve the incumbent
+     */
+    public State solveRelaxed(int width, Deadline deadline) {
+        this.deadline = deadline;
         this.lastExactLayer = null;
         this.frontier.clear();
-        Layer lastLayer = root;
+        List<Layer> layers;
+        if (this.prefix != null) {
+            layers = this.prefix;
+            this.prefix = null;
+            int shared = 1;
+            while (shared < layers.size() && layers.get(shared).width() <= width) {
+                shared++;
+            }
+            List<Layer> wider = layers.subList(shared, layers.size()); // the relaxed DD trims these layers
+            this.clearArcs(wider);
+            wider.clear();
+        } else {
+            this.releasePrefix();
+            this.root.setArcs(true);
+            layers = new ArrayList<>();
+            layers.add(this.root);
+        }
+        Layer lastLayer = layers.get(layers.size() - 1);
+        lastLayer.setIncumbent(this.incumbent);
+        lastLayer.setDeadline(deadline);
+        if (layers.size() > 1) {
+            this.lastExactLayer = lastLayer;
+        }
+        int limit = this.limit(width);
+        Consumer<Layer> fold = layer -> this.fold(layer, width - 1);
 
         while (!lastLayer.isFinal()) {
-            if (System.currentTimeMillis() - startTime > timeOut * 1000) {
+            if (deadline.expired()) {
+                this.clearArcs(layers);
                 return lastLayer.best();
             }
 
-            lastLayer = lastLayer.nextLayer();
-
-            if (lastLayer.width() > width) {
-                State[] toMerge = this.mergeSelector.select(lastLayer, lastLayer.width() - width + 1);
-                lastLayer.removeStates(toMerge, this.frontier);
+            this.pending = null;
+            Layer next = lastLayer.nextLayer(limit, fold);
+            layers.add(next);
+            if (deadline.expired()) {
+                this.pending = null;
+                this.clearArcs(layers);
+                return lastLayer.best(); // the next layer may be incomplete
+            }
 
-                State mergedState = this.problem.merge(toMerge);
-                mergedState.setExact(false);
+            if (next.width() == 0 && this.pending == null) {
+                this.clearArcs(layers);
+                return null; // no state can improve the incumbent
+            }
 
-                lastLayer.addState(mergedState);
+            if (this.pending != null || next.width() > width) {
+                this.fold(next, width - 1);
+                if (deadline.expired()) {
+                    this.pending = null;
+                    this.clearArcs(layers);
+                    return lastLayer.best();
+                }
+                next.addState(this.pending);
+                this.pending = null;
                 this.exact = false;
             }
+            lastLayer = next;
 
             if (lastLayer.isExact()) {
                 this.lastExactLayer = lastLayer;
@@ -140,15 +324,164 @@ public class DP {
             }
         }
 
-        for (State s : lastLayer.states()) {
-            if (s.isExact()) {
-                this.frontier.add(s);
+        for (int id = 0; id < lastLayer.width(); id++) {
+            if (lastLayer.isExact(id)) {
+                this.frontier.add(lastLayer.state(id));
             }
         }
 
+        this.computeLocalBounds(layers);
+
         return lastLayer.best();
     }
 
+    /**
+     * Computes bottom-up the value of the best path from each state of the relaxed DD to its last layer
+     * and sets the relaxed value of the states of the exact cutset to the value of their best path.
+     *
+     * @param layers the layers of the relaxed DD, from the root to the last one
+     */
+    private void computeLocalBounds(List<Layer> layers) {
+        for (Layer layer : layers) {
+            for (int id = 0; id < layer.width(); id++) {
+                layer.state(id).setBottom(Double.NEGATIVE_INFINITY);
+            }
+        }
+
+        Layer last = layers.get(layers.size() - 1);
+        for (int id = 0; id < last.width(); id++) {
+            last.state(id).setBottom(0);
+        }
+
+        for (int l = layers.size() - 1; l > 0; l--) {
+            Layer layer = layers.get(l);
+            for (int id = 0; id < layer.width(); id++) {
+                State state = layer.state(id);
+                for (Arc arc = state.arcs(); arc != null; arc = arc.next) {
+                    State parent = arc.parent;
+                    parent.setBottom(Math.max(parent.bottom(), arc.cost + state.bottom()));
+                }
+            }
+        }
+
+        for (State state : this.frontier) {
+            state.setRelaxedValue(state.value() + state.bottom());
+        }
+
+        this.clearArcs(layers);
+    }
+
+    /**
+     * Drops the prefix kept by the last restricted DD and the arcs recorded in it.
+     */
+    private void releasePrefix() {
+        if (this.prefix != null) {
+            this.clearArcs(this.prefix);
+            this.prefix = null;
+        }
+    }
+
+    /**
+     * Removes the arcs recorded in the relaxed DD so that the layers can be garbage collected
+     * while the states of the exact cutset are kept in the frontier.
+     *
+     * @param layers the layers of the relaxed DD
+     */
+    private void clearArcs(List<Layer> layers) {
+        for (Layer layer : layers) {
+            for (int id = 0; id < layer.width(); id++) {
+                layer.state(id).clearArcs();
+            }
+        }
+    }
+
+    /**
+     * Returns the width above which a layer being built is trimmed.
+     *
+     * @param width the maximum width of the layers
+     * @return the width plus the streaming slack, or {@code Integer.MAX_VALUE} if the layers are not streamed
+     */
+    private int limit(int width) {
+        if (!this.streaming) {
+            return Integer.MAX_VALUE;
+        }
+
+        int slack = Math.max(1, width / STREAMING_SLACK);
+        return width > Integer.MAX_VALUE - slack ? Integer.MAX_VALUE : width + slack;
+    }
+
+    /**
+     * Returns the deadline of a compilation given with the former time limit.
+     *
+     * @param startTime the time in milliseconds at which the search started
+     * @param timeOut   the time limit of the search in seconds
+     * @return the deadline {@code timeOut} seconds after {@code startTime}
+     */
+    private static Deadline deadline(long startTime, int timeOut) {
+        return Deadline.after(startTime + timeOut * 1000L - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deletes states from the layer until it contains {@code width} states.
+     *
+     * @param layer a layer wider than {@code width}
+     * @param width the maximum width of the layers
+     */
+    private void delete(Layer layer, int width) {
+        if (this.deadline.expired()) {
+            return; // the compilation stops before the next layer
+        }
+
+        int[] toRemove = this.deleteSelector.select(layer, layer.width() - width);
+        layer.removeStates(toRemove);
+        this.exact = false;
+    }
+
+    /**
+     * Folds states of the layer into the pending merged state until it contains {@code keep} states.
+     * The exact parents of the folded states are added to the frontier cutset.
+     *
+     * @param layer a layer
+     * @param keep  the number of states to keep in the layer
+     */
+    private void fold(Layer layer, int keep) {
+        if (layer.width() <= keep || this.deadline.expired()) {
+            return;
+        }
+
+        int[] toMerge = this.mergeSelector.select(layer, layer.width() - keep);
+        State[] merged = layer.states(toMerge);
+        layer.removeStates(toMerge, this.frontier);
+
+        if (this.pending != null) {
+            merged = Arrays.copyOf(merged, merged.length + 1);
+            merged[merged.length - 1] = this.pending;
+        }
+
+        this.pending = this.problem.merge(merged);
+        this.pending.setExact(false);
+        for (State state : merged) {
+            this.pending.inheritArcs(state, this.pending.value() - state.value());
+        }
+        this.exact = false;
+    }
+
+    /**
+     * Returns the local bound of an initial state computed by the last relaxed DD : the value
+     * of the state plus the value of the best path from it to the last layer of the relaxed DD.
+     * Only the paths that can improve the incumbent given to the DP are considered.
+     *
+     * @param initialState one of the initial states of the last relaxed DD
+     * @return the local bound of the state, {@code Double.NEGATIVE_INFINITY} if no path can improve the incumbent
+     */
+    public double localBound(State initialState) {
+        State state = this.root.find(initialState);
+        if (state == null) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return initialState.value() + state.bottom();
+    }
+
     /**
      * Returns a {@code boolean} telling if this DP resolution was exact.
      *
@@ -164,7 +497,7 @@ public class DP {
      * @return the {@code State} object representing the best solution found
      */
     public State solveExact() {
-        return this.solveRelaxed(Integer.MAX_VALUE, Integer.MIN_VALUE, 0);
+        return this.solveRelaxed(Integer.MAX_VALUE, Deadline.none());
     }
 
     /**
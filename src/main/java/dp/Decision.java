@@ -0,0 +1,25 @@
+package dp;
+
+/**
+ * Persistent representation of the assignment of a state : the last decision taken
+ * and a pointer to the decisions of its parent, shared by all its successors.
+ *
+ * @author Vianney Coppé
+ */
+final class Decision {
+
+    final Decision parent;
+    final int id;
+    final int value;
+
+    /**
+     * @param parent the previous decisions or {@code null} for the root
+     * @param id     the id of the variable bound
+     * @param value  the value assigned to the variable
+     */
+    Decision(Decision parent, int id, int value) {
+        this.parent = parent;
+        this.id = id;
+        this.value = value;
+    }
+}
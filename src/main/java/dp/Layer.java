@@ -3,22 +3,45 @@ package dp;
 import core.Problem;
 import core.Variable;
 import heuristics.VariableSelector;
+import utils.Deadline;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 
 /**
  * Represents a layer of the MDD.
+ * The nodes are identified by an integer in [0, width) and their value, exact property and hash
+ * are stored in primitive arrays indexed by these ids, the {@code State} objects being kept
+ * in a side array. Duplicate states are detected with an open-addressing {@code StateTable}.
  *
  * @author Vianney Coppé
  */
 public class Layer {
 
-    private Map<StateRepresentation, State> states;
+    static final int PARALLEL_THRESHOLD = 64;   // minimum width of a layer to expand it in parallel
+    private static final int PARALLEL_CHUNK = 16; // number of states expanded by a single task
+    private static final int DEADLINE_CHECK = 64; // number of states expanded between two checks of the deadline
+    private static final int INITIAL_CAPACITY = 16;
+
+    private State[] nodes;
+    private double[] values;
+    private boolean[] exacts;
+    private long[] hashes;
+    private int width;
+    private StateTable table;
+
     private Problem problem;
     private VariableSelector variableSelector;
+    private ForkJoinPool pool;
+    private Deadline deadline;
+    private double incumbent = -Double.MAX_VALUE;
+    private boolean arcs;
     private boolean exact;
     private int number;
 
@@ -30,7 +53,12 @@ public class Layer {
      * @param number           the number of the layer
      */
     public Layer(Problem problem, VariableSelector variableSelector, int number) {
-        this.states = new HashMap<>();
+        this.nodes = new State[INITIAL_CAPACITY];
+        this.values = new double[INITIAL_CAPACITY];
+        this.exacts = new boolean[INITIAL_CAPACITY];
+        this.hashes = new long[INITIAL_CAPACITY];
+        this.width = 0;
+        this.table = new StateTable(INITIAL_CAPACITY);
         this.problem = problem;
         this.variableSelector = variableSelector;
         this.exact = true;
@@ -47,7 +75,7 @@ public class Layer {
      */
     public Layer(Problem problem, VariableSelector variableSelector, State state, int number) {
         this(problem, variableSelector, number);
-        this.states.put(state.stateRepresentation, state);
+        this.append(state, StateTable.hash(state.stateRepresentation));
         this.exact = state.isExact();
     }
 
@@ -59,11 +87,41 @@ public class Layer {
      * @return the next layer of the MDD
      */
     public Layer nextLayer() {
+        return this.nextLayer(Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Returns the next layer of the MDD, calling {@code overflow} each time the layer being built
+     * gets wider than {@code limit} so that it can be trimmed before the remaining successors are added.
+     * The limit is ignored when the layer is expanded in parallel.
+     * If the deadline of the layer is reached, the expansion stops and the next layer only contains
+     * part of the successors.
+     *
+     * @param limit    the width above which the next layer has to be trimmed
+     * @param overflow the function trimming the next layer to at most {@code limit} states
+     * @return the next layer of the MDD
+     */
+    public Layer nextLayer(int limit, Consumer<Layer> overflow) {
         Layer next = new Layer(this.problem, this.variableSelector, this.number + 1);
+        next.setPool(this.pool);
+        next.setDeadline(this.deadline);
+        next.setIncumbent(this.incumbent);
+        next.setArcs(this.arcs);
+
+        if (this.pool != null && this.width >= PARALLEL_THRESHOLD) {
+            this.expandParallel(next);
+            return next;
+        }
+
         Variable nextVar = null;
 
         next.setExact(this.exact);
-        for (State state : this.states.values()) {
+        for (int id = 0; id < this.width; id++) {
+            if (id % DEADLINE_CHECK == DEADLINE_CHECK - 1 && this.expired()) {
+                return next;
+            }
+
+            State state = this.nodes[id];
             if (state.isExact()) {
                 state.exactParents().clear(); // we do not need them anymore -> garbage collection
             }
@@ -74,18 +132,134 @@ public class Layer {
 
             State[] successors = this.problem.successors(state, nextVar);
             for (State s : successors) {
+                if (this.cannotImprove(s)) {
+                    continue;
+                }
+
+                if (this.arcs) {
+                    s.addArc(state, s.value() - state.value());
+                }
                 if (state.isExact()) {
                     s.addParent(state);
                 } else {
                     s.setExact(false);
                 }
                 next.addState(s);
+                if (next.width > limit) {
+                    overflow.accept(next);
+                }
             }
         }
 
         return next;
     }
 
+    /**
+     * Fills the next layer by splitting the states of this layer across the fork-join pool.
+     * The successors are merged in a concurrent table in which a state with the same
+     * {@code StateRepresentation} is updated atomically.
+     *
+     * @param next the empty next layer
+     */
+    private void expandParallel(Layer next) {
+        State[] parents = Arrays.copyOf(this.nodes, this.width);
+        Variable nextVar = this.variableSelector.select(parents[0].freeVariables(), this);
+        ConcurrentHashMap<StateRepresentation, State> successors = new ConcurrentHashMap<>(2 * parents.length);
+
+        boolean exact = this.pool.invoke(new Expansion(parents, 0, parents.length, nextVar, successors));
+
+        for (State state : successors.values()) {
+            next.append(state, StateTable.hash(state.stateRepresentation));
+        }
+        next.setExact(this.exact && exact);
+    }
+
+    /**
+     * Task generating the successors of a range of states of the layer.
+     * Returns {@code true} <==> all the successors generated are exact.
+     */
+    private class Expansion extends RecursiveTask<Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final State[] parents;
+        private final int from, to;
+        private final Variable var;
+        private final ConcurrentHashMap<StateRepresentation, State> successors;
+
+        Expansion(State[] parents, int from, int to, Variable var, ConcurrentHashMap<StateRepresentation, State> successors) {
+            this.parents = parents;
+            this.from = from;
+            this.to = to;
+            this.var = var;
+            this.successors = successors;
+        }
+
+        protected Boolean compute() {
+            if (this.to - this.from > PARALLEL_CHUNK) {
+                int mid = (this.from + this.to) >>> 1;
+                Expansion left = new Expansion(this.parents, this.from, mid, this.var, this.successors);
+                left.fork();
+                boolean exact = new Expansion(this.parents, mid, this.to, this.var, this.successors).compute();
+                return left.join() && exact;
+            }
+
+            boolean exact = true;
+            if (expired()) {
+                return exact;
+            }
+
+            for (int i = this.from; i < this.to; i++) {
+                State state = this.parents[i];
+                if (state.isExact()) {
+                    state.exactParents().clear(); // we do not need them anymore -> garbage collection
+                }
+
+                for (State s : problem.successors(state, this.var)) {
+                    if (cannotImprove(s)) {
+                        continue;
+                    }
+
+                    if (arcs) {
+                        s.addArc(state, s.value() - state.value());
+                    }
+                    if (state.isExact()) {
+                        s.addParent(state);
+                    } else {
+                        s.setExact(false);
+                    }
+                    s.setLayerNumber(number + 1);
+                    exact &= s.isExact();
+                    this.successors.merge(s.stateRepresentation, s, (existing, other) -> {
+                        existing.update(other);
+                        existing.inheritArcs(other, 0);
+                        return existing;
+                    });
+                }
+            }
+            return exact;
+        }
+    }
+
+    /**
+     * Returns a {@code boolean} telling if the rough upper bound of the state shows that it cannot lead
+     * to a better solution than the incumbent.
+     *
+     * @param state a state
+     * @return {@code true} <==> the state can be discarded
+     */
+    private boolean cannotImprove(State state) {
+        return this.incumbent > -Double.MAX_VALUE
+                && state.value() + this.problem.roughUpperBound(state) <= this.incumbent;
+    }
+
+    /**
+     * @return {@code true} <==> the deadline of the layer is reached
+     */
+    private boolean expired() {
+        return this.deadline != null && this.deadline.expired();
+    }
+
     /**
      * Adds states to the layer or updates an existing state in the layer with the same {@code StateRepresentation}.
      *
@@ -94,50 +268,180 @@ public class Layer {
     public void addState(State state) {
         this.exact &= state.isExact();
         state.setLayerNumber(this.number);
-        if (this.states.containsKey(state.stateRepresentation)) {
-            this.states.get(state.stateRepresentation).update(state);
+
+        long hash = StateTable.hash(state.stateRepresentation);
+        int id = this.table.putIfAbsent(state.stateRepresentation, hash, this.width, this.nodes);
+        if (id < 0) {
+            this.store(state, hash);
         } else {
-            this.states.put(state.stateRepresentation, state);
+            State existing = this.nodes[id];
+            existing.update(state);
+            if (this.arcs) {
+                existing.inheritArcs(state, 0);
+            }
+            this.values[id] = existing.value();
+            this.exacts[id] = existing.isExact();
         }
     }
 
+    /**
+     * Adds a state whose {@code StateRepresentation} is not in the layer yet, as the last node.
+     *
+     * @param state the state to be added
+     * @param hash  the hash of its representation
+     */
+    private void append(State state, long hash) {
+        this.table.put(hash, this.width);
+        this.store(state, hash);
+    }
+
+    /**
+     * Stores a state as the last node, its id being already in the table.
+     *
+     * @param state the state to be added
+     * @param hash  the hash of its representation
+     */
+    private void store(State state, long hash) {
+        if (this.width == this.nodes.length) {
+            int capacity = 2 * this.nodes.length;
+            this.nodes = Arrays.copyOf(this.nodes, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.exacts = Arrays.copyOf(this.exacts, capacity);
+            this.hashes = Arrays.copyOf(this.hashes, capacity);
+        }
+
+        this.nodes[this.width] = state;
+        this.values[this.width] = state.value();
+        this.exacts[this.width] = state.isExact();
+        this.hashes[this.width] = hash;
+        this.width++;
+    }
+
     /**
      * Remove the states from the layer.
      *
      * @param states the states to be removed
      */
     public void removeStates(State[] states) {
+        int[] ids = new int[states.length];
+        int n = 0;
         for (State state : states) {
-            if (this.states.containsKey(state.stateRepresentation)) {
-                this.states.remove(state.stateRepresentation);
+            int id = this.table.find(state.stateRepresentation, StateTable.hash(state.stateRepresentation), this.nodes);
+            if (id >= 0) {
+                ids[n++] = id;
             }
         }
-        this.exact = false;
+        this.removeStates(Arrays.copyOf(ids, n));
     }
 
     /**
-     * Remove the states from the layer.
+     * Remove the nodes from the layer.
+     * The remaining nodes are compacted and thus get new ids,
+     * the table is rebuilt from the stored hashes.
      *
-     * @param states   the states to be removed
-     * @param frontier the frontier cutset in order to add exact parents
+     * @param ids the ids of the nodes to be removed
      */
-    public void removeStates(State[] states, Set<State> frontier) {
-        for (State state : states) {
-            if (this.states.containsKey(state.stateRepresentation)) {
-                this.states.remove(state.stateRepresentation);
+    public void removeStates(int[] ids) {
+        boolean[] removed = new boolean[this.width];
+        for (int id : ids) {
+            removed[id] = true;
+        }
+
+        this.table.clear();
+        int width = 0;
+        for (int id = 0; id < this.width; id++) {
+            if (!removed[id]) {
+                if (width != id) {
+                    this.nodes[width] = this.nodes[id];
+                    this.values[width] = this.values[id];
+                    this.exacts[width] = this.exacts[id];
+                    this.hashes[width] = this.hashes[id];
+                }
+                this.table.put(this.hashes[width], width);
+                width++;
             }
-            frontier.addAll(state.exactParents());
         }
+        Arrays.fill(this.nodes, width, this.width, null);
+        this.width = width;
         this.exact = false;
     }
 
     /**
-     * Returns a {@code Set} of all states contained in the layer.
+     * Remove the nodes from the layer.
+     * The remaining nodes are compacted and thus get new ids.
+     *
+     * @param ids      the ids of the nodes to be removed
+     * @param frontier the frontier cutset in order to add exact parents
+     */
+    public void removeStates(int[] ids, Set<State> frontier) {
+        for (int id : ids) {
+            frontier.addAll(this.nodes[id].exactParents());
+        }
+        this.removeStates(ids);
+    }
+
+    /**
+     * Returns a {@code Collection} of all states contained in the layer.
      *
-     * @return a {@code Set} with all the states
+     * @return an unmodifiable {@code Collection} with all the states
      */
     public Collection<State> states() {
-        return this.states.values();
+        return Collections.unmodifiableList(Arrays.asList(this.nodes).subList(0, this.width));
+    }
+
+    /**
+     * Returns the states of the given nodes.
+     *
+     * @param ids the ids of some nodes of the layer
+     * @return an array with the corresponding {@code State} objects
+     */
+    public State[] states(int[] ids) {
+        State[] states = new State[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            states[i] = this.nodes[ids[i]];
+        }
+        return states;
+    }
+
+    /**
+     * Returns the state of the layer with the same {@code StateRepresentation} as the given state.
+     *
+     * @param state a state
+     * @return the state of the layer equal to the given one or {@code null} if there is none
+     */
+    State find(State state) {
+        int id = this.table.find(state.stateRepresentation, StateTable.hash(state.stateRepresentation), this.nodes);
+        return id < 0 ? null : this.nodes[id];
+    }
+
+    /**
+     * Returns the state of the given node.
+     *
+     * @param id the id of a node of the layer
+     * @return the corresponding {@code State} object
+     */
+    public State state(int id) {
+        return this.nodes[id];
+    }
+
+    /**
+     * Returns the values of the nodes indexed by their id, valid in [0, width).
+     * The array is not copied and should not be modified.
+     *
+     * @return the array of values of the nodes
+     */
+    public double[] values() {
+        return this.values;
+    }
+
+    /**
+     * Returns a {@code boolean} telling if the given node is exact.
+     *
+     * @param id the id of a node of the layer
+     * @return {@code true} <==> the node is exact
+     */
+    public boolean isExact(int id) {
+        return this.exacts[id];
     }
 
     /**
@@ -146,7 +450,7 @@ public class Layer {
      * @return the number of states in the layer
      */
     public int width() {
-        return this.states.size();
+        return this.width;
     }
 
     /**
@@ -155,13 +459,13 @@ public class Layer {
      * @return a {@code State} object representing the best state of the layer
      */
     public State best() {
-        State best = null;
-        for (State state : this.states.values()) {
-            if (best == null || state.value() > best.value()) {
-                best = state;
+        int best = -1;
+        for (int id = 0; id < this.width; id++) {
+            if (best == -1 || this.values[id] > this.values[best]) {
+                best = id;
             }
         }
-        return best;
+        return best == -1 ? null : this.nodes[best];
     }
 
     /**
@@ -173,6 +477,46 @@ public class Layer {
         return this.exact;
     }
 
+    /**
+     * Sets the pool used to generate the successors of the wide layers in parallel.
+     * The next layers use the same pool.
+     * The {@code Problem} implementation should then support concurrent calls to {@code successors}.
+     *
+     * @param pool a fork-join pool or {@code null} to generate the successors sequentially
+     */
+    void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the deadline of the compilation : the expansion of the next layers stops once it is reached.
+     * The next layers use the same deadline.
+     *
+     * @param deadline the deadline of the compilation or {@code null} if there is no limit
+     */
+    void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Sets the value of the incumbent solution : the successors whose value plus their rough upper bound
+     * is not better are not added to the next layers.
+     *
+     * @param incumbent the value of the best solution known
+     */
+    void setIncumbent(double incumbent) {
+        this.incumbent = incumbent;
+    }
+
+    /**
+     * Makes the states of the next layers record their incoming arcs.
+     *
+     * @param arcs {@code true} to record the arcs of the DD
+     */
+    void setArcs(boolean arcs) {
+        this.arcs = arcs;
+    }
+
     /**
      * Help function to set the exact property of the layer.
      *
@@ -188,10 +532,7 @@ public class Layer {
      * @return {@code true} <==> the layer is the final one
      */
     public boolean isFinal() {
-        for (State state : this.states.values()) {
-            return state.isFinal();
-        }
-        return false;
+        return this.width > 0 && this.nodes[0].isFinal();
     }
 
     /**
@@ -201,10 +542,7 @@ public class Layer {
      * @return {@code true} <==> the variable {@code i} is bound
      */
     public boolean isBound(int i) {
-        for (State state : states.values()) {
-            return state.isBound(i);
-        }
-        return false;
+        return this.width > 0 && this.nodes[0].isBound(i);
     }
 
     /**
@@ -214,9 +552,6 @@ public class Layer {
      * @return the variable {@code i}
      */
     public Variable getVariable(int i) {
-        for (State state : states.values()) {
-            return state.getVariable(i);
-        }
-        return null;
+        return this.width > 0 ? this.nodes[0].getVariable(i) : null;
     }
 }
@@ -2,7 +2,11 @@ package dp;
 
 import core.Variable;
 
+import utils.Encoding;
+
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -13,6 +17,8 @@ import java.util.Set;
  */
 public class State implements Comparable<State> {
 
+    private static final long FOOTPRINT = 128; // the fields, the set of parents and the decision of a state, in bytes
+
     private double value;
     private double relaxedValue;
     private boolean exact;
@@ -20,9 +26,15 @@ public class State implements Comparable<State> {
     public StateRepresentation stateRepresentation;
     private Set<State> parents;
 
-    private int nVariables;
-    public Variable[] variables;
-    public int[] indexes;
+    private VariableOrder order;
+    private Decision decision;
+    private Variable[] solution;
+
+    private Arc arcs;      // incoming arcs, only recorded in relaxed DDs
+    private double bottom; // value of the best path from this state to the last layer
+
+    private byte[] encoded; // the encoded representation while the state is compact
+    private double rank;    // the rank of the representation while the state is compact
 
     /**
      * @param stateRepresentation the state representation in the dynamic programming approach
@@ -40,34 +52,29 @@ public class State implements Comparable<State> {
      * @param exact               a boolean telling if the state is exact or not
      */
     public State(StateRepresentation stateRepresentation, Variable[] variables, double value, boolean exact) {
-        this(stateRepresentation, variables, new int[variables.length], value, exact);
-        for (int i = 0; i < nVariables; i++) {
-            this.indexes[i] = i;
-        }
+        this(stateRepresentation.copy(), new VariableOrder(variables), null, value, exact);
     }
 
     /**
      * @param stateRepresentation the state representation in the dynamic programming approach
-     * @param variables           the variables of this state
-     * @param indexes             the index of each variable indexed by their id
+     * @param assignment          a state from the same layer whose assignment is shared
      * @param value               the value of the objective function at this point
      * @param exact               a boolean telling if the state is exact or not
      */
-    public State(StateRepresentation stateRepresentation, Variable[] variables, int[] indexes, double value, boolean exact) {
-        this.stateRepresentation = stateRepresentation.copy();
+    public State(StateRepresentation stateRepresentation, State assignment, double value, boolean exact) {
+        this(stateRepresentation.copy(), assignment.order, assignment.decision, value, exact);
+        this.layerNumber = assignment.layerNumber;
+    }
+
+    private State(StateRepresentation stateRepresentation, VariableOrder order, Decision decision, double value, boolean exact) {
+        this.stateRepresentation = stateRepresentation;
         this.value = value;
         this.exact = exact;
         this.layerNumber = 0;
-        this.nVariables = variables.length;
         this.relaxedValue = Double.MAX_VALUE;
         this.parents = new HashSet<>();
-
-        this.variables = new Variable[this.nVariables];
-        this.indexes = new int[this.nVariables];
-        for (int i = 0; i < nVariables; i++) {
-            this.variables[i] = variables[i];
-            this.indexes[i] = indexes[i];
-        }
+        this.order = order;
+        this.decision = decision;
     }
 
     /**
@@ -76,7 +83,7 @@ public class State implements Comparable<State> {
      * @return a different {@code State} object with the same properties
      */
     public State copy() {
-        return new State(this.stateRepresentation, this.variables, this.indexes, this.value, this.exact);
+        return new State(this.stateRepresentation.copy(), this.order, this.decision, this.value, this.exact);
     }
 
     /**
@@ -86,20 +93,9 @@ public class State implements Comparable<State> {
      * @param value the value to be assigned
      */
     public void assign(int id, int value) {
-        this.variables[indexes[id]] = this.variables[indexes[id]].copy();
-        this.variables[indexes[id]].assign(value);
-
-        int i1 = indexes[id];
-        int i2 = this.layerNumber - 1;
-
-        Variable v1 = this.variables[i1];
-        Variable v2 = this.variables[i2];
-
-        this.variables[i1] = v2;
-        this.variables[i2] = v1;
-
-        this.indexes[v1.id] = i2;
-        this.indexes[v2.id] = i1;
+        this.order = this.order.bind(id, this.layerNumber - 1);
+        this.decision = new Decision(this.decision, id, value);
+        this.solution = null;
     }
 
     /**
@@ -109,8 +105,9 @@ public class State implements Comparable<State> {
      */
     public void update(State other) {
         if (this.value < other.value()) {
-            System.arraycopy(other.variables, 0, this.variables, 0, this.nVariables);
-            System.arraycopy(other.indexes, 0, this.indexes, 0, this.nVariables);
+            this.order = other.order;
+            this.decision = other.decision;
+            this.solution = null;
             this.value = other.value;
         }
         this.exact &= other.exact;
@@ -119,15 +116,17 @@ public class State implements Comparable<State> {
 
     /**
      * Utility function to build a new state from this one, with one more variable bound.
+     * The successor shares the assignment of this state and only records the new decision.
      *
-     * @param stateRepresentation the {@code StateRepresentation} for the successor state
+     * @param stateRepresentation the {@code StateRepresentation} for the successor state,
+     *                            which is not copied and should thus not be shared with another state
      * @param value               the value for the successor state
      * @param id                  the id of the variable to bind
      * @param val                 the value to bind to the varible chosen
      * @return a new state with the internal properties required to be the successor of this state
      */
     public State getSuccessor(StateRepresentation stateRepresentation, double value, int id, int val) {
-        State succ = new State(stateRepresentation, variables, indexes, value, exact);
+        State succ = new State(stateRepresentation, this.order, this.decision, value, exact);
         succ.setLayerNumber(this.layerNumber + 1);
         succ.assign(id, val);
         return succ;
@@ -139,17 +138,59 @@ public class State implements Comparable<State> {
      * @return an array with the free variables of the state
      */
     public Variable[] freeVariables() {
-        return Arrays.copyOfRange(this.variables, this.layerNumber, this.nVariables);
+        return Arrays.copyOfRange(this.order.variables, this.layerNumber, this.order.variables.length);
+    }
+
+    /**
+     * Returns a {@code boolean} telling if the given state is at the same layer as this one
+     * with the same variables bound, so that both can be the initial states of the same DD.
+     *
+     * @param other another state
+     * @return {@code true} <==> both states bind the same variables
+     */
+    public boolean bindsSameVariables(State other) {
+        if (this.layerNumber != other.layerNumber) {
+            return false;
+        }
+        if (this.order == other.order) {
+            return true;
+        }
+
+        for (int i = 0; i < this.layerNumber; i++) {
+            if (other.order.indexes[this.order.variables[i].id] >= this.layerNumber) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the variables bound by the state, whatever the order in which they were bound.
+     * With a dynamic variable order, two states at the same layer with the same representation
+     * only lead to the same subproblem if they bind the same variables.
+     *
+     * @return the set of the ids of the bound variables
+     */
+    public BitSet boundVariables() {
+        BitSet bound = new BitSet(this.order.variables.length);
+        for (int i = 0; i < this.layerNumber; i++) {
+            bound.set(this.order.variables[i].id);
+        }
+        return bound;
     }
 
     /**
      * Help function to get the variable with id i.
+     * The assignment is materialized the first time a bound variable is requested.
      *
      * @param i the if of a variable
      * @return the variable with id i
      */
     public Variable getVariable(int i) {
-        return this.variables[this.indexes[i]];
+        if (!this.isBound(i)) {
+            return this.order.variables[this.order.indexes[i]];
+        }
+        return this.variables()[this.order.indexes[i]];
     }
 
     /**
@@ -159,7 +200,33 @@ public class State implements Comparable<State> {
      * @return {@code true} <==> the variable {@code i} is bound
      */
     public boolean isBound(int i) {
-        return this.indexes[i] < this.layerNumber;
+        return this.order.indexes[i] < this.layerNumber;
+    }
+
+    /**
+     * Materializes the assignment of the state by following the decisions up to the root.
+     * Takes a time linear in the number of variables, it should only be used to read a solution.
+     *
+     * @return the variables of the state by order of assignment, with their value if they are bound
+     */
+    public Variable[] variables() {
+        if (this.solution == null) {
+            Variable[] variables = new Variable[this.order.variables.length];
+            for (Decision d = this.decision; d != null; d = d.parent) {
+                int i = this.order.indexes[d.id];
+                if (variables[i] == null) { // the most recent decision on a variable prevails
+                    variables[i] = this.order.variables[i].copy();
+                    variables[i].assign(d.value);
+                }
+            }
+            for (int i = 0; i < variables.length; i++) {
+                if (variables[i] == null) {
+                    variables[i] = this.order.variables[i];
+                }
+            }
+            this.solution = variables;
+        }
+        return this.solution;
     }
 
     /**
@@ -213,7 +280,7 @@ public class State implements Comparable<State> {
      * @return {@code true} <==> the state is a final one
      */
     public boolean isFinal() {
-        return this.layerNumber == this.nVariables;
+        return this.layerNumber == this.order.variables.length;
     }
 
     /**
@@ -222,7 +289,7 @@ public class State implements Comparable<State> {
      * @return the number of variables of the state
      */
     public int nVariables() {
-        return this.nVariables;
+        return this.order.variables.length;
     }
 
     /**
@@ -239,6 +306,184 @@ public class State implements Comparable<State> {
         this.relaxedValue = relaxedValue;
     }
 
+    /**
+     * @return the estimated number of bytes of the state, including its representation or its encoded form
+     */
+    public long footprint() {
+        long representation = this.encoded != null ? this.encoded.length : this.stateRepresentation.footprint();
+        return FOOTPRINT + representation;
+    }
+
+    /**
+     * Puts the state in a compact form while it waits in the frontier :
+     * its representation is encoded with the codec and its exact parents are dropped.
+     * The state should not be used in a DD until {@code expand} is called.
+     *
+     * @param codec the codec of the problem
+     */
+    public void compact(StateCodec codec) {
+        this.rank = this.stateRepresentation.rank(this);
+        this.encoded = codec.encode(this.stateRepresentation);
+        this.stateRepresentation = null;
+        this.parents = null;
+        this.solution = null;
+    }
+
+    /**
+     * Decodes the representation of a compact state.
+     *
+     * @param codec the codec used to compact the state
+     */
+    public void expand(StateCodec codec) {
+        if (this.encoded != null) {
+            this.stateRepresentation = codec.decode(this.encoded);
+            this.encoded = null;
+            this.parents = new HashSet<>();
+        }
+    }
+
+    /**
+     * Returns a compact copy of the state, sharing its decisions and its encoded representation,
+     * which is not affected by a later call to {@code expand} on this state.
+     *
+     * @param codec the codec of the problem, used if the state is not compact
+     * @return a compact copy of the state
+     */
+    public State compactCopy(StateCodec codec) {
+        State copy = new State(null, this.order, this.decision, this.value, this.exact);
+        copy.layerNumber = this.layerNumber;
+        copy.relaxedValue = this.relaxedValue;
+        copy.rank = this.rank();
+        copy.encoded = this.encoded != null ? this.encoded : codec.encode(this.stateRepresentation);
+        copy.parents = null;
+        return copy;
+    }
+
+    /**
+     * Encodes the state into bytes : its values, its layer, the decisions taken since the root
+     * and its representation encoded with the codec.
+     * The exact parents and the order of the free variables are not encoded.
+     *
+     * @param codec the codec of the problem
+     * @return the bytes from which {@code decode} can rebuild the state
+     */
+    public byte[] encode(StateCodec codec) {
+        byte[] representation = this.encoded != null ? this.encoded : codec.encode(this.stateRepresentation);
+
+        int nDecisions = 0;
+        for (Decision d = this.decision; d != null; d = d.parent) {
+            nDecisions++;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(8 * 3 + 1 + 5 * (3 + 2 * nDecisions) + representation.length);
+        buffer.putDouble(this.value);
+        buffer.putDouble(this.relaxedValue);
+        buffer.putDouble(this.rank());
+        buffer.put((byte) (this.exact ? 1 : 0));
+        Encoding.writeVarInt(buffer, this.layerNumber);
+        Encoding.writeVarInt(buffer, nDecisions);
+        for (Decision d = this.decision; d != null; d = d.parent) { // from the last decision to the first one
+            Encoding.writeVarInt(buffer, d.id);
+            Encoding.writeVarInt(buffer, d.value);
+        }
+        Encoding.writeVarInt(buffer, representation.length);
+        buffer.put(representation);
+
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Rebuilds a state encoded by {@code encode}.
+     * The state is compact, {@code expand} should be called before using it in a DD.
+     *
+     * @param bytes the encoded state
+     * @param root  the root of the problem, from which the decisions of the state were taken
+     * @return the decoded state
+     */
+    public static State decode(byte[] bytes, State root) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        double value = buffer.getDouble();
+        double relaxedValue = buffer.getDouble();
+        double rank = buffer.getDouble();
+        boolean exact = buffer.get() != 0;
+        int layerNumber = Encoding.readVarInt(buffer);
+
+        int nDecisions = Encoding.readVarInt(buffer);
+        int[] ids = new int[nDecisions];
+        int[] values = new int[nDecisions];
+        for (int k = nDecisions - 1; k >= 0; k--) {
+            ids[k] = Encoding.readVarInt(buffer);
+            values[k] = Encoding.readVarInt(buffer);
+        }
+
+        Decision decision = root.decision;
+        for (int k = 0; k < nDecisions; k++) {
+            decision = new Decision(decision, ids[k], values[k]);
+        }
+
+        byte[] representation = new byte[Encoding.readVarInt(buffer)];
+        buffer.get(representation);
+
+        // the successors bind one variable per layer, starting from the layer of the root
+        State state = new State(null, root.order.bindAll(ids, layerNumber - nDecisions), decision, value, exact);
+        state.layerNumber = layerNumber;
+        state.relaxedValue = relaxedValue;
+        state.rank = rank;
+        state.encoded = representation;
+        state.parents = null;
+        return state;
+    }
+
+    /**
+     * Records an incoming arc of the state.
+     *
+     * @param parent the state of the previous layer
+     * @param cost   the value gained along the arc
+     */
+    void addArc(State parent, double cost) {
+        this.arcs = new Arc(parent, cost, this.arcs);
+    }
+
+    /**
+     * Redirects the incoming arcs of another state to this state.
+     *
+     * @param other a state merged into this state
+     * @param shift the value added to the cost of the arcs, i. e. the value of this state minus the value of the other
+     */
+    void inheritArcs(State other, double shift) {
+        for (Arc arc = other.arcs; arc != null; arc = arc.next) {
+            this.arcs = new Arc(arc.parent, arc.cost + shift, this.arcs);
+        }
+    }
+
+    /**
+     * @return the first incoming arc of the state or {@code null}
+     */
+    Arc arcs() {
+        return this.arcs;
+    }
+
+    /**
+     * Removes the incoming arcs of the state so that the DD can be garbage collected.
+     */
+    void clearArcs() {
+        this.arcs = null;
+    }
+
+    /**
+     * @return the value of the best path found from this state to the last layer
+     */
+    double bottom() {
+        return this.bottom;
+    }
+
+    /**
+     * @param bottom the value of the best path from this state to the last layer
+     */
+    void setBottom(double bottom) {
+        this.bottom = bottom;
+    }
+
     /**
      * Adds an exact parent to the state
      *
@@ -284,6 +529,10 @@ public class State implements Comparable<State> {
      * @return the same comparison as the corresponding state representations
      */
     public int compareTo(State o) {
-        return Double.compare(this.stateRepresentation.rank(this), o.stateRepresentation.rank(o));
+        return Double.compare(this.rank(), o.rank());
+    }
+
+    private double rank() {
+        return this.stateRepresentation == null ? this.rank : this.stateRepresentation.rank(this);
     }
 }
@@ -0,0 +1,27 @@
+package dp;
+
+/**
+ * Enables storing the states waiting in the frontier of the branch and bound in a compact form,
+ * by encoding their {@code StateRepresentation} into bytes until they are explored.
+ *
+ * @author Vianney Coppé
+ */
+public interface StateCodec {
+
+    /**
+     * Encodes a representation into bytes.
+     *
+     * @param stateRepresentation a representation of the problem
+     * @return the bytes from which {@code decode} can rebuild an equal representation
+     */
+    byte[] encode(StateRepresentation stateRepresentation);
+
+    /**
+     * Rebuilds a representation from its encoding.
+     *
+     * @param bytes the bytes returned by {@code encode}
+     * @return a representation equal to the encoded one
+     */
+    StateRepresentation decode(byte[] bytes);
+
+}
@@ -16,4 +16,30 @@ public interface StateRepresentation {
 
     StateRepresentation copy();
 
+    /**
+     * Returns a 64-bit hash of the representation, used to detect equivalent states in a layer.
+     * Equivalent states should have the same hash.
+     * By default, it is derived from {@code hashCode}, which usually runs over the whole representation.
+     * Implementations can instead maintain it incrementally : the hash of a successor is derived
+     * from the hash of its parent and the positions that changed, for instance with {@code utils.Zobrist},
+     * and {@code hashCode} is derived from it.
+     *
+     * @return the 64-bit hash of the representation
+     */
+    default long longHashCode() {
+        long h = this.hashCode() * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Returns an estimate of the memory used by the representation, from which the solver bounds
+     * the width of the DDs when the heap runs short.
+     * By default, it is the size of a small object.
+     *
+     * @return the estimated number of bytes of the representation
+     */
+    default long footprint() {
+        return 64;
+    }
+
 }
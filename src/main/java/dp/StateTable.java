@@ -0,0 +1,142 @@
+package dp;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from the {@code StateRepresentation} of the nodes of a layer to their id.
+ * The 64-bit hash of each node is stored next to its slot, so that an insertion or an update
+ * takes a single probe sequence, comparisons only call {@code equals} when the hashes match,
+ * and the table grows without hashing the representations again.
+ *
+ * @author Vianney Coppé
+ */
+final class StateTable {
+
+    private static final int EMPTY = -1;
+
+    private int[] ids;
+    private long[] hashes;
+    private int mask;
+    private int size;
+
+    /**
+     * Returns an empty table.
+     *
+     * @param expected the expected number of nodes
+     */
+    StateTable(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, 2 * expected - 1)) << 1;
+        this.ids = new int[capacity];
+        this.hashes = new long[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+        Arrays.fill(this.ids, EMPTY);
+    }
+
+    /**
+     * Returns the 64-bit hash of a representation.
+     *
+     * @param rep a state representation
+     * @return the hash to be given to the other methods of the table
+     */
+    static long hash(StateRepresentation rep) {
+        return rep.longHashCode();
+    }
+
+    /**
+     * Returns the id of the node with the given representation.
+     *
+     * @param rep   a state representation
+     * @param hash  its hash
+     * @param nodes the nodes of the layer indexed by their id
+     * @return the id of the node or {@code -1} if there is none
+     */
+    int find(StateRepresentation rep, long hash, State[] nodes) {
+        for (int i = (int) hash & this.mask; ; i = (i + 1) & this.mask) {
+            int id = this.ids[i];
+            if (id == EMPTY) {
+                return -1;
+            }
+            if (this.hashes[i] == hash && nodes[id].stateRepresentation.equals(rep)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the node with the given representation if there is one,
+     * otherwise maps the representation to the given id.
+     *
+     * @param rep   a state representation
+     * @param hash  its hash
+     * @param id    the id of the new node
+     * @param nodes the nodes of the layer indexed by their id
+     * @return the id of the existing node or {@code -1} if the representation was inserted
+     */
+    int putIfAbsent(StateRepresentation rep, long hash, int id, State[] nodes) {
+        int i = (int) hash & this.mask;
+        for (; this.ids[i] != EMPTY; i = (i + 1) & this.mask) {
+            if (this.hashes[i] == hash && nodes[this.ids[i]].stateRepresentation.equals(rep)) {
+                return this.ids[i];
+            }
+        }
+
+        this.ids[i] = id;
+        this.hashes[i] = hash;
+        if (++this.size > this.mask >>> 1) {
+            this.grow();
+        }
+        return -1;
+    }
+
+    /**
+     * Maps a representation known to be absent from the table to the given id.
+     *
+     * @param hash the hash of the representation
+     * @param id   the id of the node
+     */
+    void put(long hash, int id) {
+        int i = (int) hash & this.mask;
+        while (this.ids[i] != EMPTY) {
+            i = (i + 1) & this.mask;
+        }
+
+        this.ids[i] = id;
+        this.hashes[i] = hash;
+        if (++this.size > this.mask >>> 1) {
+            this.grow();
+        }
+    }
+
+    /**
+     * Removes all the mappings, keeping the capacity.
+     */
+    void clear() {
+        Arrays.fill(this.ids, EMPTY);
+        this.size = 0;
+    }
+
+    /**
+     * Doubles the capacity, reinserting the ids with their stored hash.
+     */
+    private void grow() {
+        int[] ids = this.ids;
+        long[] hashes = this.hashes;
+
+        this.ids = new int[2 * ids.length];
+        this.hashes = new long[2 * ids.length];
+        this.mask = this.ids.length - 1;
+        Arrays.fill(this.ids, EMPTY);
+
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != EMPTY) {
+                int j = (int) hashes[i] & this.mask;
+                while (this.ids[j] != EMPTY) {
+                    j = (j + 1) & this.mask;
+                }
+                this.ids[j] = ids[i];
+                this.hashes[j] = hashes[i];
+            }
+        }
+    }
+}
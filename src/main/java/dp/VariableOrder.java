@@ -0,0 +1,114 @@
+package dp;
+
+import core.Variable;
+
+/**
+ * Order in which the variables of a state are bound : the variables bound in the first {@code k}
+ * layers are at the first {@code k} positions.
+ * Immutable, so that all the states of a layer reached by binding the same variable share
+ * the same object instead of copying the arrays.
+ *
+ * @author Vianney Coppé
+ */
+final class VariableOrder {
+
+    final Variable[] variables; // the variables by position, with the values they had in the root
+    final int[] indexes;        // the position of each variable indexed by their id
+
+    private volatile Binding last;
+
+    /**
+     * Returns the order given by the array.
+     *
+     * @param variables the variables by position
+     */
+    VariableOrder(Variable[] variables) {
+        this.variables = variables.clone();
+        this.indexes = new int[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            this.indexes[variables[i].id] = i;
+        }
+    }
+
+    private VariableOrder(Variable[] variables, int[] indexes) {
+        this.variables = variables;
+        this.indexes = indexes;
+    }
+
+    /**
+     * Returns the order obtained by moving the variable {@code id} at the given position.
+     * The last result is memoized since all the states of a layer bind the same variable.
+     *
+     * @param id       the id of the variable to bind
+     * @param position the position where to move it
+     * @return the new order
+     */
+    VariableOrder bind(int id, int position) {
+        int i1 = this.indexes[id];
+        if (i1 == position) {
+            return this;
+        }
+
+        Binding last = this.last;
+        if (last != null && last.id == id && last.position == position) {
+            return last.order;
+        }
+
+        Variable[] variables = this.variables.clone();
+        int[] indexes = this.indexes.clone();
+
+        Variable v1 = variables[i1];
+        Variable v2 = variables[position];
+
+        variables[i1] = v2;
+        variables[position] = v1;
+
+        indexes[v1.id] = position;
+        indexes[v2.id] = i1;
+
+        VariableOrder order = new VariableOrder(variables, indexes);
+        this.last = new Binding(id, position, order);
+        return order;
+    }
+
+    /**
+     * Returns the order obtained by moving the given variables at consecutive positions,
+     * copying the arrays only once.
+     *
+     * @param ids  the ids of the variables to bind, in the order in which they were bound
+     * @param from the position of the first one
+     * @return the new order
+     */
+    VariableOrder bindAll(int[] ids, int from) {
+        Variable[] variables = this.variables.clone();
+        int[] indexes = this.indexes.clone();
+
+        for (int k = 0; k < ids.length; k++) {
+            int i1 = indexes[ids[k]];
+            int position = from + k;
+
+            Variable v1 = variables[i1];
+            Variable v2 = variables[position];
+
+            variables[i1] = v2;
+            variables[position] = v1;
+
+            indexes[v1.id] = position;
+            indexes[v2.id] = i1;
+        }
+
+        return new VariableOrder(variables, indexes);
+    }
+
+    private static final class Binding {
+
+        final int id, position;
+        final VariableOrder order;
+
+        Binding(int id, int position, VariableOrder order) {
+            this.id = id;
+            this.position = position;
+            this.order = order;
+        }
+    }
+}
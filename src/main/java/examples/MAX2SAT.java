@@ -5,10 +5,13 @@ import core.Solver;
 import core.Variable;
 import dp.Layer;
 import dp.State;
+import dp.StateCodec;
 import dp.StateRepresentation;
 import heuristics.MinLPDeleteSelector;
 import heuristics.MinLPMergeSelector;
 import heuristics.VariableSelector;
+import utils.Encoding;
+import utils.Zobrist;
 import javafx.util.Pair;
 
 import java.io.File;
@@ -23,7 +26,10 @@ public class MAX2SAT implements Problem {
 
     private static int nVariables;
     private State root;
-    private static boolean done = false;
+    private Zobrist zobrist;
+    private double[] unitWeights; // the best weight of the unit clauses of each variable
+    private double[] halfWeights; // half of the sum of the absolute weights of the binary clauses of each variable
+    private static volatile boolean done = false;
 
     public double opt;
 
@@ -52,6 +58,20 @@ public class MAX2SAT implements Problem {
         nVariables = g.length;
         done = false;
         MAX2SAT.g = g;
+        this.zobrist = new Zobrist(nVariables);
+
+        this.unitWeights = new double[nVariables];
+        this.halfWeights = new double[nVariables];
+        for (int i = 0; i < nVariables; i++) {
+            for (Map.Entry<Integer, double[]> e : g[i].entrySet()) {
+                double[] w = e.getValue();
+                if (e.getKey() == i) {
+                    this.unitWeights[i] = Math.max(w[0], w[3]);
+                } else {
+                    this.halfWeights[i] += (Math.abs(w[0]) + Math.abs(w[1]) + Math.abs(w[2]) + Math.abs(w[3])) / 2;
+                }
+            }
+        }
 
         Variable[] variables = new Variable[nVariables];
         for (int i = 0; i < nVariables; i++) {
@@ -69,6 +89,43 @@ public class MAX2SAT implements Problem {
         return nVariables;
     }
 
+    public double roughUpperBound(State s) {
+        MAX2SATState max2satState = (MAX2SATState) s.stateRepresentation;
+        if (Double.isNaN(max2satState.bound)) { // the root or a state decoded from the frontier
+            max2satState.bound = this.bound(s, max2satState.benefits);
+        }
+        return max2satState.bound;
+    }
+
+    /**
+     * @param s        a state
+     * @param benefits the benefits of the representation of the state
+     * @return the rough upper bound of the state, computed from scratch
+     */
+    private double bound(State s, double[] benefits) {
+        // each free variable brings at most its benefit, its unit clause and its clauses with other free variables
+        double bound = 0;
+        for (int i = 0; i < nVariables; i++) {
+            if (!s.isBound(i)) {
+                bound += Math.abs(benefits[i]) + this.unitWeights[i] + this.halfWeights[i];
+            }
+        }
+
+        return bound;
+    }
+
+    public StateCodec codec() {
+        return new StateCodec() {
+            public byte[] encode(StateRepresentation stateRepresentation) {
+                return Encoding.encodeSparse(((MAX2SATState) stateRepresentation).benefits);
+            }
+
+            public StateRepresentation decode(byte[] bytes) {
+                return new MAX2SATState(Encoding.decodeSparse(bytes, nVariables));
+            }
+        };
+    }
+
     public State[] successors(State s, Variable var) {
         int u = var.id;
 
@@ -77,6 +134,8 @@ public class MAX2SAT implements Problem {
         // assigning var to 0
         double[] benefits0 = new double[nVariables];
         double value0 = s.value() + Math.max(0, -max2satState.benefits[u]);
+        long hash0 = max2satState.hash ^ zobrist.key(u, max2satState.benefits[u]);
+        double bound0 = 0;
 
         for (int i = 0; i < nVariables; i++) {
             if (!s.isBound(i)) {
@@ -95,18 +154,24 @@ public class MAX2SAT implements Problem {
                                 Math.max(0, -max2satState.benefits[i]) + g[u].get(i)[numTF]
                         );
                         benefits0[i] += g[u].get(i)[numTT] - g[u].get(i)[numTF];
+                        hash0 ^= zobrist.key(i, max2satState.benefits[i]) ^ zobrist.key(i, benefits0[i]);
                     } else {
                         value0 += g[u].get(i)[numFF];
                     }
                 }
+                if (u != i) {
+                    bound0 += Math.abs(benefits0[i]) + this.unitWeights[i] + this.halfWeights[i];
+                }
             }
         }
 
-        State state0 = s.getSuccessor(new MAX2SATState(benefits0), value0, u, 0);
+        State state0 = s.getSuccessor(new MAX2SATState(benefits0, hash0, bound0), value0, u, 0);
 
         // assigning var to 1
         double[] benefits1 = new double[nVariables];
         double value1 = s.value() + Math.max(0, max2satState.benefits[u]);
+        long hash1 = max2satState.hash ^ zobrist.key(u, max2satState.benefits[u]);
+        double bound1 = 0;
 
         for (int i = 0; i < nVariables; i++) {
             if (!s.isBound(i)) {
@@ -125,14 +190,18 @@ public class MAX2SAT implements Problem {
                                 Math.max(0, -max2satState.benefits[i]) + g[u].get(i)[numFF]
                         );
                         benefits1[i] += g[u].get(i)[numFT] - g[u].get(i)[numFF];
+                        hash1 ^= zobrist.key(i, max2satState.benefits[i]) ^ zobrist.key(i, benefits1[i]);
                     } else {
                         value1 += g[u].get(i)[numTT];
                     }
                 }
+                if (u != i) {
+                    bound1 += Math.abs(benefits1[i]) + this.unitWeights[i] + this.halfWeights[i];
+                }
             }
         }
 
-        State state1 = s.getSuccessor(new MAX2SATState(benefits1), value1, u, 1);
+        State state1 = s.getSuccessor(new MAX2SATState(benefits1, hash1, bound1), value1, u, 1);
 
         State[] ret = {state0, state1};
 
@@ -140,8 +209,7 @@ public class MAX2SAT implements Problem {
     }
 
     public State merge(State[] states) {
-        Variable[] variables = null;
-        int[] indexes = null;
+        State best = null;
         double maxValue = -Double.MAX_VALUE;
         double[] benefits = new double[nVariables];
         double[] newValues = new double[states.length];
@@ -180,12 +248,13 @@ public class MAX2SAT implements Problem {
         for (i = 0; i < newValues.length; i++) {
             if (newValues[i] > maxValue) {
                 maxValue = newValues[i];
-                variables = states[i].variables;
-                indexes = states[i].indexes;
+                best = states[i];
             }
         }
 
-        return new State(new MAX2SATState(benefits), variables, indexes, maxValue, false);
+        MAX2SATState max2satState = new MAX2SATState(benefits);
+        max2satState.bound = this.bound(best, benefits);
+        return new State(max2satState, best, maxValue, false);
     }
 
     private static Map<Integer, double[]>[] toGraph(int n, Clause[] clauses) {
@@ -213,17 +282,30 @@ public class MAX2SAT implements Problem {
     class MAX2SATState implements StateRepresentation {
 
         double[] benefits;
+        long hash;    // Zobrist hash of the benefits, maintained incrementally
+        double bound; // the rough upper bound, maintained by the successors and the merge, NaN until known
 
         public MAX2SATState(int size) {
             this.benefits = new double[size];
+            this.bound = Double.NaN;
         }
 
         public MAX2SATState(double[] benefits) {
+            this(benefits, zobrist.hash(benefits), Double.NaN);
+        }
+
+        private MAX2SATState(double[] benefits, long hash, double bound) {
             this.benefits = benefits;
+            this.hash = hash;
+            this.bound = bound;
         }
 
         public int hashCode() {
-            return Arrays.hashCode(benefits);
+            return (int) (this.hash ^ (this.hash >>> 32));
+        }
+
+        public long longHashCode() {
+            return this.hash;
         }
 
         public boolean equals(Object o) {
@@ -232,7 +314,7 @@ public class MAX2SAT implements Problem {
             }
 
             MAX2SATState other = (MAX2SATState) o;
-            return Arrays.equals(benefits, other.benefits);
+            return this.hash == other.hash && Arrays.equals(benefits, other.benefits);
         }
 
         public double rank(State state) {
@@ -246,17 +328,21 @@ public class MAX2SAT implements Problem {
         }
 
         public MAX2SATState copy() {
-            return new MAX2SATState(this.benefits.clone());
+            return new MAX2SATState(this.benefits.clone(), this.hash, this.bound);
+        }
+
+        public long footprint() {
+            return 48 + 8L * this.benefits.length;
         }
     }
 
     public static class MAX2SATVariableSelector implements VariableSelector {
 
-        int[] index;
+        volatile int[] index;
 
         public Variable select(Variable[] vars, Layer layer) {
             if (!done) {
-                index = new int[nVariables];
+                int[] index = new int[nVariables];
                 @SuppressWarnings("unchecked")
                 Pair<Double, Integer>[] l = new Pair[nVariables];
 
@@ -275,6 +361,7 @@ public class MAX2SAT implements Problem {
                     index[l[i].getValue()] = i;
                 }
 
+                this.index = index; // published before done so that concurrent workers see a complete array
                 done = true;
             }
 
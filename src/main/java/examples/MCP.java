@@ -4,10 +4,13 @@ import core.Problem;
 import core.Solver;
 import core.Variable;
 import dp.State;
+import dp.StateCodec;
 import dp.StateRepresentation;
 import heuristics.MinLPDeleteSelector;
 import heuristics.MinLPMergeSelector;
 import heuristics.SimpleVariableSelector;
+import utils.Encoding;
+import utils.Zobrist;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -21,6 +24,8 @@ import java.util.Map;
 public class MCP implements Problem {
 
     private Map<Integer, Double>[] g;
+    private Zobrist zobrist;
+    private double[] halfWeights; // half of the sum of the absolute weights of the edges of each vertex
 
     private int nVariables;
     private State root;
@@ -45,6 +50,14 @@ public class MCP implements Problem {
     private MCP(Map<Integer, Double>[] g) {
         this.nVariables = g.length;
         this.g = g;
+        this.zobrist = new Zobrist(this.nVariables);
+
+        this.halfWeights = new double[this.nVariables];
+        for (int i = 0; i < this.nVariables; i++) {
+            for (double e : g[i].values()) {
+                this.halfWeights[i] += Math.abs(e) / 2;
+            }
+        }
 
         Variable[] variables = new Variable[this.nVariables];
         for (int i = 0; i < this.nVariables; i++) {
@@ -81,8 +94,7 @@ public class MCP implements Problem {
     }
 
     public State merge(State[] states) {
-        Variable[] variables = null;
-        int[] indexes = null;
+        State best = null;
         double maxValue = -Double.MAX_VALUE;
         double[] benefits = new double[nVariables];
         double[] newValues = new double[states.length];
@@ -121,23 +133,62 @@ public class MCP implements Problem {
         for (i = 0; i < newValues.length; i++) {
             if (newValues[i] > maxValue) {
                 maxValue = newValues[i];
-                variables = states[i].variables;
-                indexes = states[i].indexes;
+                best = states[i];
+            }
+        }
+
+        MCPState mcpState = new MCPState(benefits);
+        mcpState.bound = this.bound(best, benefits);
+        return new State(mcpState, best, maxValue, false);
+    }
+
+    public double roughUpperBound(State s) {
+        MCPState mcpState = (MCPState) s.stateRepresentation;
+        if (Double.isNaN(mcpState.bound)) { // the root or a state decoded from the frontier
+            mcpState.bound = this.bound(s, mcpState.benefits);
+        }
+        return mcpState.bound;
+    }
+
+    /**
+     * @param s        a state
+     * @param benefits the benefits of the representation of the state
+     * @return the rough upper bound of the state, computed from scratch
+     */
+    private double bound(State s, double[] benefits) {
+        // each free vertex brings at most its benefit and each edge between free vertices at most its weight
+        double bound = 0;
+        for (int i = 0; i < this.nVariables; i++) {
+            if (!s.isBound(i)) {
+                bound += Math.abs(benefits[i]) + this.halfWeights[i];
             }
         }
 
-        return new State(new MCPState(benefits), variables, indexes, maxValue, false);
+        return bound;
+    }
+
+    public StateCodec codec() {
+        return new StateCodec() {
+            public byte[] encode(StateRepresentation stateRepresentation) {
+                return Encoding.encodeSparse(((MCPState) stateRepresentation).benefits);
+            }
+
+            public StateRepresentation decode(byte[] bytes) {
+                return new MCPState(Encoding.decodeSparse(bytes, nVariables));
+            }
+        };
     }
 
     public State[] successors(State s, Variable var) {
         int u = var.id;
 
-        Variable[] variables = s.variables;
         MCPState mcpState = ((MCPState) s.stateRepresentation);
 
         // assigning var to 0
         double[] benefits0 = new double[this.nVariables];
         double value0 = s.value() + Math.max(0, -mcpState.benefits[u]);
+        long hash0 = mcpState.hash ^ zobrist.key(u, mcpState.benefits[u]);
+        double bound0 = 0;
 
         for (int i = 0; i < this.nVariables; i++) {
             if (i != u && !s.isBound(i)) {
@@ -147,15 +198,19 @@ public class MCP implements Problem {
                         value0 += Math.min(Math.abs(mcpState.benefits[i]), Math.abs(g[u].get(i)));
                     }
                     benefits0[i] += g[u].get(i);
+                    hash0 ^= zobrist.key(i, mcpState.benefits[i]) ^ zobrist.key(i, benefits0[i]);
                 }
+                bound0 += Math.abs(benefits0[i]) + this.halfWeights[i];
             }
         }
 
-        State state0 = s.getSuccessor(new MCPState(benefits0), value0, u, 0);
+        State state0 = s.getSuccessor(new MCPState(benefits0, hash0, bound0), value0, u, 0);
 
         // assigning var to 1
         double[] benefits1 = new double[this.nVariables];
         double value1 = s.value() + Math.max(0, mcpState.benefits[u]);
+        long hash1 = mcpState.hash ^ zobrist.key(u, mcpState.benefits[u]);
+        double bound1 = 0;
 
         for (int i = 0; i < this.nVariables; i++) {
             if (i != u && !s.isBound(i)) {
@@ -165,11 +220,13 @@ public class MCP implements Problem {
                         value1 += Math.min(Math.abs(mcpState.benefits[i]), Math.abs(g[u].get(i)));
                     }
                     benefits1[i] -= g[u].get(i);
+                    hash1 ^= zobrist.key(i, mcpState.benefits[i]) ^ zobrist.key(i, benefits1[i]);
                 }
+                bound1 += Math.abs(benefits1[i]) + this.halfWeights[i];
             }
         }
 
-        State state1 = s.getSuccessor(new MCPState(benefits1), value1, u, 1);
+        State state1 = s.getSuccessor(new MCPState(benefits1, hash1, bound1), value1, u, 1);
 
         State[] ret = {state0, state1};
 
@@ -195,17 +252,30 @@ public class MCP implements Problem {
     class MCPState implements StateRepresentation {
 
         double[] benefits;
+        long hash;    // Zobrist hash of the benefits, maintained incrementally
+        double bound; // the rough upper bound, maintained by the successors and the merge, NaN until known
 
         public MCPState(int size) {
             this.benefits = new double[size];
+            this.bound = Double.NaN;
         }
 
         public MCPState(double[] benefits) {
+            this(benefits, zobrist.hash(benefits), Double.NaN);
+        }
+
+        private MCPState(double[] benefits, long hash, double bound) {
             this.benefits = benefits;
+            this.hash = hash;
+            this.bound = bound;
         }
 
         public int hashCode() {
-            return Arrays.hashCode(benefits);
+            return (int) (this.hash ^ (this.hash >>> 32));
+        }
+
+        public long longHashCode() {
+            return this.hash;
         }
 
         public boolean equals(Object o) {
@@ -214,7 +284,7 @@ public class MCP implements Problem {
             }
 
             MCPState other = (MCPState) o;
-            return Arrays.equals(benefits, other.benefits);
+            return this.hash == other.hash && Arrays.equals(benefits, other.benefits);
         }
 
         public double rank(State state) {
@@ -228,7 +298,11 @@ public class MCP implements Problem {
         }
 
         public MCPState copy() {
-            return new MCPState(this.benefits.clone());
+            return new MCPState(this.benefits.clone(), this.hash, this.bound);
+        }
+
+        public long footprint() {
+            return 48 + 8L * this.benefits.length;
         }
     }
 
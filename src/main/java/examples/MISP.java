@@ -5,10 +5,12 @@ import core.Solver;
 import core.Variable;
 import dp.Layer;
 import dp.State;
+import dp.StateCodec;
 import dp.StateRepresentation;
 import heuristics.MinLPDeleteSelector;
 import heuristics.MinLPMergeSelector;
 import heuristics.VariableSelector;
+import utils.Zobrist;
 
 import java.io.File;
 import java.util.BitSet;
@@ -24,6 +26,7 @@ public class MISP implements Problem {
 
     private double[] weights;
     private LinkedList<Integer>[] g;
+    private Zobrist zobrist;
 
     private int nVariables;
     private State root;
@@ -51,6 +54,7 @@ public class MISP implements Problem {
         this.nVariables = weights.length;
         this.weights = weights;
         this.g = g;
+        this.zobrist = new Zobrist(this.nVariables);
 
         Variable[] variables = new Variable[this.nVariables];
         for (int i = 0; i < this.nVariables; i++) {
@@ -69,26 +73,52 @@ public class MISP implements Problem {
     }
 
     public State merge(State[] states) {
-        Variable[] variables = null;
-        int[] indexes = null;
+        State best = null;
         double maxValue = -Double.MAX_VALUE;
         MISPState mispState = null;
 
         for (State state : states) {
             if (mispState == null) {
-                mispState = (MISPState) state.stateRepresentation;
+                mispState = ((MISPState) state.stateRepresentation).copy();
             } else {
-                mispState.bs.or(((MISPState) state.stateRepresentation).bs);
+                mispState.or((MISPState) state.stateRepresentation);
             }
 
             if (state.value() > maxValue) {
                 maxValue = state.value();
-                variables = state.variables;
-                indexes = state.indexes;
+                best = state;
             }
         }
 
-        return new State(mispState, variables, indexes, maxValue, false);
+        return new State(mispState, best, maxValue, false);
+    }
+
+    public double roughUpperBound(State s) {
+        return ((MISPState) s.stateRepresentation).freeWeight; // the weights of the vertices that can still be selected
+    }
+
+    /**
+     * @param bs a set of vertices
+     * @return the sum of the positive weights of the vertices
+     */
+    private double weight(BitSet bs) {
+        double weight = 0;
+        for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+            weight += Math.max(0, this.weights[i]);
+        }
+        return weight;
+    }
+
+    public StateCodec codec() {
+        return new StateCodec() {
+            public byte[] encode(StateRepresentation stateRepresentation) {
+                return ((MISPState) stateRepresentation).bs.toByteArray();
+            }
+
+            public StateRepresentation decode(byte[] bytes) {
+                return new MISPState(BitSet.valueOf(bytes));
+            }
+        };
     }
 
     public State[] successors(State s, Variable var) {
@@ -97,7 +127,7 @@ public class MISP implements Problem {
 
         // assign 0
         MISPState mispState0 = mispState.copy();
-        mispState0.bs.clear(u);
+        mispState0.clear(u);
         State dontTake = s.getSuccessor(mispState0, s.value(), u, 0);
 
         if (!mispState.isFree(u)) {
@@ -107,10 +137,10 @@ public class MISP implements Problem {
 
         // assign 1
         MISPState mispState1 = mispState.copy();
-        mispState1.bs.clear(u);
+        mispState1.clear(u);
 
         for (int v : g[u]) {
-            mispState1.bs.clear(v);
+            mispState1.clear(v);
         }
 
         State take = s.getSuccessor(mispState1, s.value() + this.weights[u], u, 1);
@@ -139,32 +169,81 @@ public class MISP implements Problem {
 
         int size;
         BitSet bs;
+        long hash;         // Zobrist hash of the free vertices, maintained incrementally
+        double freeWeight; // the positive weights of the free vertices, maintained incrementally
 
         public MISPState(int size) {
             this.size = size;
             this.bs = new BitSet(size);
             this.bs.flip(0, size);
+            this.hash = zobrist.hash(this.bs);
+            this.freeWeight = weight(this.bs);
         }
 
         public MISPState(BitSet bitSet) {
+            this(bitSet, zobrist.hash(bitSet), weight(bitSet));
+        }
+
+        private MISPState(BitSet bitSet, long hash, double freeWeight) {
             this.size = bitSet.size();
             this.bs = (BitSet) bitSet.clone();
+            this.hash = hash;
+            this.freeWeight = freeWeight;
         }
 
         public int hashCode() {
-            return this.bs.hashCode();
+            return (int) (this.hash ^ (this.hash >>> 32));
+        }
+
+        public long longHashCode() {
+            return this.hash;
         }
 
         public boolean equals(Object o) {
-            return o instanceof MISPState && this.bs.equals(((MISPState) o).bs);
+            if (!(o instanceof MISPState)) {
+                return false;
+            }
+
+            MISPState other = (MISPState) o;
+            return this.hash == other.hash && this.bs.equals(other.bs);
         }
 
         public boolean isFree(int u) {
             return this.bs.get(u);
         }
 
+        /**
+         * Removes a vertex from the free vertices, updating the hash and the free weight in constant time.
+         *
+         * @param u a vertex
+         */
+        public void clear(int u) {
+            if (this.bs.get(u)) {
+                this.bs.clear(u);
+                this.hash ^= zobrist.key(u);
+                this.freeWeight -= Math.max(0, weights[u]);
+            }
+        }
+
+        /**
+         * Adds the free vertices of another state, updating the hash and the free weight for the vertices added.
+         *
+         * @param other another state
+         */
+        public void or(MISPState other) {
+            BitSet added = (BitSet) other.bs.clone();
+            added.andNot(this.bs);
+            this.bs.or(added);
+            this.hash ^= zobrist.hash(added);
+            this.freeWeight += weight(added);
+        }
+
         public MISPState copy() {
-            return new MISPState(this.bs);
+            return new MISPState(this.bs, this.hash, this.freeWeight);
+        }
+
+        public long footprint() {
+            return 64 + this.size / 8;
         }
 
         public double rank(State state) {
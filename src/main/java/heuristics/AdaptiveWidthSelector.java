@@ -0,0 +1,153 @@
+package heuristics;
+
+import dp.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tunes the widths of the DDs during the search, separately for each depth of the nodes.
+ * The widths start at the number of variables not bound and are then multiplied by a constant factor
+ * after each compilation :
+ * <ul>
+ * <li>both widths shrink when a DD takes more than the target time or when less than a fifth of the heap is free ;</li>
+ * <li>the width of the restricted DDs grows when an inexact DD takes less than half the target time,
+ * in order to find better solutions ;</li>
+ * <li>the width of the relaxed DDs grows when its bounds seldom prune the nodes and the DD takes less than half
+ * the target time, and shrinks slowly when its bounds prune almost all the nodes.</li>
+ * </ul>
+ *
+ * @author Vianney Coppé
+ */
+public class AdaptiveWidthSelector implements WidthSelector {
+
+    private static final double GROWTH = 1.25;
+    private static final double SHRINK = 0.75;
+    private static final double RELAX = 0.95;     // the factor applied while the relaxed bounds prune easily
+    private static final double SMOOTHING = 0.1;  // the weight of the last relaxed DD in the pruning rate
+    private static final double HEADROOM = 0.2;   // the fraction of the heap that should stay free
+
+    private final long target;
+    private final int minWidth;
+    private double[] restricted; // the widths by depth, 0 if no node was compiled at this depth
+    private double[] relaxed;
+    private double[] pruning;    // the rate at which the relaxed bounds prune the nodes, by depth
+
+    /**
+     * @param targetTime the time a DD should take to compile
+     * @param unit       the unit of the target time
+     * @param minWidth   the minimum width of the DDs
+     */
+    public AdaptiveWidthSelector(long targetTime, TimeUnit unit, int minWidth) {
+        if (targetTime <= 0 || minWidth < 1) {
+            throw new IllegalArgumentException("The target time and the minimum width should be positive");
+        }
+        this.target = unit.toNanos(targetTime);
+        this.minWidth = minWidth;
+        this.restricted = new double[0];
+        this.relaxed = new double[0];
+        this.pruning = new double[0];
+    }
+
+    /**
+     * Returns a selector aiming at DDs compiled in 10 milliseconds with a width of at least 2.
+     */
+    public AdaptiveWidthSelector() {
+        this(10, TimeUnit.MILLISECONDS, 2);
+    }
+
+    public synchronized int restrictedWidth(State state, int nFree) {
+        int depth = this.depth(state, nFree);
+        return this.width(this.restricted[depth]);
+    }
+
+    public synchronized int relaxedWidth(State state, int nFree) {
+        int depth = this.depth(state, nFree);
+        return this.width(this.relaxed[depth]);
+    }
+
+    public synchronized void restrictedCompiled(State state, int width, long time, boolean exact) {
+        int depth = state.layerNumber();
+        if (exact || depth >= this.restricted.length) {
+            return;
+        }
+
+        if (time > this.target || lowMemory()) {
+            this.restricted[depth] = Math.max(this.minWidth, width * SHRINK);
+        } else if (2 * time < this.target) {
+            this.restricted[depth] = Math.max(this.restricted[depth], width * GROWTH);
+        }
+    }
+
+    public synchronized void relaxedCompiled(State state, int width, long time, boolean pruned) {
+        int depth = state.layerNumber();
+        if (depth >= this.relaxed.length) {
+            return;
+        }
+
+        double rate = this.pruning[depth];
+        this.pruning[depth] = rate = Double.isNaN(rate) ? (pruned ? 1 : 0) : (1 - SMOOTHING) * rate + SMOOTHING * (pruned ? 1 : 0);
+
+        if (time > this.target || lowMemory()) {
+            this.relaxed[depth] = Math.max(this.minWidth, width * SHRINK);
+        } else if (rate < 0.5 && 2 * time < this.target) {
+            this.relaxed[depth] = Math.max(this.relaxed[depth], width * GROWTH);
+        } else if (rate > 0.9) {
+            this.relaxed[depth] = Math.max(this.minWidth, width * RELAX);
+        }
+    }
+
+    /**
+     * Returns the depth of the node, making room for it and setting its initial widths if needed.
+     *
+     * @param state a node
+     * @param nFree the number of variables not bound in the node
+     * @return the depth of the node
+     */
+    private int depth(State state, int nFree) {
+        int depth = state.layerNumber();
+        if (depth >= this.restricted.length) {
+            int length = Math.max(depth + 1, 2 * this.restricted.length);
+            this.restricted = Arrays.copyOf(this.restricted, length);
+            this.relaxed = Arrays.copyOf(this.relaxed, length);
+            int from = this.pruning.length;
+            this.pruning = Arrays.copyOf(this.pruning, length);
+            Arrays.fill(this.pruning, from, length, Double.NaN);
+        }
+        if (this.restricted[depth] == 0) {
+            this.restricted[depth] = Math.max(this.minWidth, nFree);
+            this.relaxed[depth] = Math.max(this.minWidth, nFree);
+        }
+        return depth;
+    }
+
+    private int width(double width) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.round(width));
+    }
+
+    /**
+     * @return {@code true} <==> less than the headroom of the heap is free
+     */
+    private static boolean lowMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return runtime.maxMemory() - used < HEADROOM * runtime.maxMemory();
+    }
+
+    /**
+     * @return the widths of the restricted and relaxed DDs for each depth reached
+     */
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int depth = 0; depth < this.restricted.length; depth++) {
+            if (this.restricted[depth] > 0) {
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+                builder.append(depth).append(" : ").append(this.width(this.restricted[depth]))
+                        .append(" / ").append(this.width(this.relaxed[depth]));
+            }
+        }
+        return builder.toString();
+    }
+}
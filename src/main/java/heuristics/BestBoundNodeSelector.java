@@ -0,0 +1,27 @@
+package heuristics;
+
+import dp.State;
+
+/**
+ * Explores first the node with the best relaxed value, the deepest one in case of tie.
+ * Never explores a node whose bound is worse than the optimal value.
+ *
+ * @author Vianney Coppé
+ */
+public class BestBoundNodeSelector implements NodeSelector {
+
+    public int compare(State s1, State s2) {
+        int cmp = Double.compare(s2.relaxedValue(), s1.relaxedValue());
+        if (cmp != 0) {
+            return cmp;
+        }
+
+        cmp = Integer.compare(s2.layerNumber(), s1.layerNumber());
+        if (cmp != 0) {
+            return cmp;
+        }
+
+        return Double.compare(s2.value(), s1.value());
+    }
+
+}
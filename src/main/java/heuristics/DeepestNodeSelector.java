@@ -0,0 +1,22 @@
+package heuristics;
+
+import dp.State;
+
+/**
+ * Explores first the deepest node, the one with the best relaxed value in case of tie.
+ * Finds good solutions quickly and keeps the frontier small.
+ *
+ * @author Vianney Coppé
+ */
+public class DeepestNodeSelector implements NodeSelector {
+
+    public int compare(State s1, State s2) {
+        int cmp = Integer.compare(s2.layerNumber(), s1.layerNumber());
+        if (cmp != 0) {
+            return cmp;
+        }
+
+        return Double.compare(s2.relaxedValue(), s1.relaxedValue());
+    }
+
+}
@@ -1,7 +1,6 @@
 package heuristics;
 
 import dp.Layer;
-import dp.State;
 
 /**
  * Enables defining heuristics to select nodes to be deleted when building a restricted MDD.
@@ -12,11 +11,13 @@ public interface DeleteSelector {
 
     /**
      * Selects the states to be deleted in order to restrict the MDD.
+     * The nodes of the layer are identified by their id in [0, {@code layer.width()}),
+     * their values can be read from {@code layer.values()}.
      *
      * @param layer  the layer from which we need to remove states
      * @param number the number of states to be removed
-     * @return an array of {@code State} objects to be deleted from the layer
+     * @return an array of {@code number} distinct ids of the nodes to be deleted from the layer
      */
-    State[] select(Layer layer, int number);
+    int[] select(Layer layer, int number);
 
 }
@@ -0,0 +1,20 @@
+package heuristics;
+
+import dp.State;
+
+/**
+ * Gives both DDs of a node a width equal to the number of variables not bound in the node.
+ *
+ * @author Vianney Coppé
+ */
+public class FixedWidthSelector implements WidthSelector {
+
+    public int restrictedWidth(State state, int nFree) {
+        return Math.max(1, nFree);
+    }
+
+    public int relaxedWidth(State state, int nFree) {
+        return Math.max(1, nFree);
+    }
+
+}
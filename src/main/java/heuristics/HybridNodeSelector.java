@@ -0,0 +1,47 @@
+package heuristics;
+
+import dp.State;
+
+import java.util.Comparator;
+
+/**
+ * Explores the nodes with the best relaxed value first as long as the frontier is small,
+ * and the deepest ones first once it contains more than a given number of nodes,
+ * until it is back to half this number.
+ *
+ * @author Vianney Coppé
+ */
+public class HybridNodeSelector implements NodeSelector {
+
+    private final int limit;
+    private final NodeSelector bestBound;
+    private final NodeSelector deepest;
+    private volatile boolean diving;
+
+    /**
+     * @param limit the number of nodes in the frontier above which the deepest nodes are explored first
+     */
+    public HybridNodeSelector(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The limit should be positive");
+        }
+        this.limit = limit;
+        this.bestBound = new BestBoundNodeSelector();
+        this.deepest = new DeepestNodeSelector();
+        this.diving = false;
+    }
+
+    public int compare(State s1, State s2) {
+        return this.bestBound.compare(s1, s2);
+    }
+
+    public Comparator<State> order(int size) {
+        if (size > this.limit) {
+            this.diving = true;
+        } else if (size <= this.limit / 2) {
+            this.diving = false;
+        }
+        return this.diving ? this.deepest : this.bestBound;
+    }
+
+}
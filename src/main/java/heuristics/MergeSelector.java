@@ -1,7 +1,6 @@
 package heuristics;
 
 import dp.Layer;
-import dp.State;
 
 /**
  * Enables defining heuristics to select nodes to be merged when building a relax MDD.
@@ -12,11 +11,13 @@ public interface MergeSelector {
 
     /**
      * Selects the states to be merged in order to relax the MDD.
+     * The nodes of the layer are identified by their id in [0, {@code layer.width()}),
+     * their values can be read from {@code layer.values()}.
      *
      * @param layer  the layer in which we need to merge states
      * @param number the number of states to merge
-     * @return an array of {@code State} objects to be merged in the layer
+     * @return an array of {@code number} distinct ids of the nodes to be merged in the layer
      */
-    State[] select(Layer layer, int number);
+    int[] select(Layer layer, int number);
 
 }
@@ -1,10 +1,7 @@
 package heuristics;
 
 import dp.Layer;
-import dp.State;
-import utils.StateComparator;
-
-import java.util.Arrays;
+import utils.Selection;
 
 /**
  * Merges the nodes with the least path values.
@@ -13,20 +10,8 @@ import java.util.Arrays;
  */
 public class MinLPMergeSelector implements MergeSelector {
 
-    public State[] select(Layer layer, int number) {
-        State[] states = new State[layer.width()];
-        layer.states().toArray(states);
-
-        Arrays.sort(states, StateComparator.COMPARATOR);
-        State[] ret = new State[number];
-        int i = 0;
-
-        for (State s : states) {
-            ret[i++] = s;
-            if (i == number) break;
-        }
-
-        return ret;
+    public int[] select(Layer layer, int number) {
+        return Selection.least(layer.values(), layer.width(), number);
     }
 
 }
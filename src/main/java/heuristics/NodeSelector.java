@@ -0,0 +1,28 @@
+package heuristics;
+
+import dp.State;
+
+import java.util.Comparator;
+
+/**
+ * Enables defining the order in which the nodes of the frontier are explored by the branch and bound algorithm.
+ * The least node for the comparator is explored first.
+ *
+ * @author Vianney Coppé
+ */
+public interface NodeSelector extends Comparator<State> {
+
+    /**
+     * Returns the order in which the nodes should be explored given the size of the frontier,
+     * allowing a heuristic to change its strategy during the search.
+     * The frontier is reordered each time the result changes.
+     * May be called concurrently by the workers.
+     *
+     * @param size the number of nodes in the frontier
+     * @return the order of the nodes, this selector by default
+     */
+    default Comparator<State> order(int size) {
+        return this;
+    }
+
+}
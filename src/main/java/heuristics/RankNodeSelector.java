@@ -0,0 +1,16 @@
+package heuristics;
+
+import dp.State;
+
+/**
+ * Explores first the node with the least rank given by its {@code StateRepresentation}.
+ *
+ * @author Vianney Coppé
+ */
+public class RankNodeSelector implements NodeSelector {
+
+    public int compare(State s1, State s2) {
+        return s1.compareTo(s2);
+    }
+
+}
@@ -1,20 +1,12 @@
 package heuristics;
 
 import dp.Layer;
-import dp.State;
+import utils.Selection;
 
 public class SimpleDeleteSelector implements DeleteSelector {
 
-    public State[] select(Layer layer, int number) {
-        State[] ret = new State[number];
-        int i = 0;
-
-        for (State s : layer.states()) {
-            ret[i++] = s;
-            if (i == number) break;
-        }
-
-        return ret;
+    public int[] select(Layer layer, int number) {
+        return Selection.first(number);
     }
 
 }
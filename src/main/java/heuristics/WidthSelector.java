@@ -0,0 +1,55 @@
+package heuristics;
+
+import dp.State;
+
+/**
+ * Enables defining the maximum width of the restricted and relaxed DDs compiled from the nodes
+ * of the branch and bound. The selector is informed of the result of each compilation,
+ * allowing a heuristic to adapt the widths during the search.
+ * May be called concurrently by the workers.
+ *
+ * @author Vianney Coppé
+ */
+public interface WidthSelector {
+
+    /**
+     * Returns the maximum width of the restricted DD of a node.
+     *
+     * @param state the node
+     * @param nFree the number of variables not bound in the node
+     * @return a positive width
+     */
+    int restrictedWidth(State state, int nFree);
+
+    /**
+     * Returns the maximum width of the relaxed DD of a node.
+     *
+     * @param state the node
+     * @param nFree the number of variables not bound in the node
+     * @return a positive width
+     */
+    int relaxedWidth(State state, int nFree);
+
+    /**
+     * Called once the restricted DD of a node is compiled.
+     *
+     * @param state the node
+     * @param width the width of the DD
+     * @param time  the time spent compiling the DD in nanoseconds
+     * @param exact {@code true} <==> the DD was exact, the node is then solved
+     */
+    default void restrictedCompiled(State state, int width, long time, boolean exact) {
+    }
+
+    /**
+     * Called once the relaxed DD of a node is compiled.
+     *
+     * @param state  the node
+     * @param width  the width of the DD
+     * @param time   the time spent compiling the DD in nanoseconds
+     * @param pruned {@code true} <==> the bound of the DD showed that the node cannot improve the incumbent
+     */
+    default void relaxedCompiled(State state, int width, long time, boolean pruned) {
+    }
+
+}
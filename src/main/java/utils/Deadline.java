@@ -0,0 +1,105 @@
+package utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time limit of a computation shared by several threads, which can also be cancelled from any thread.
+ * Based on {@code System.nanoTime} so that it is not affected by the changes of the wall clock.
+ * The deadline is cheap to check and meant to be polled at regular intervals inside long loops.
+ * A thread checking the deadline while it is interrupted cancels it for all the threads sharing it.
+ * A child deadline is reached with its parent but can also be cancelled on its own.
+ *
+ * @author Vianney Coppé
+ */
+public final class Deadline {
+
+    private static final long NONE = Long.MAX_VALUE;
+
+    private final long nanos; // the value of System.nanoTime at which the time is up, NONE if there is no limit
+    private final Deadline parent;
+    private volatile boolean cancelled;
+
+    private Deadline(long nanos, Deadline parent) {
+        this.nanos = nanos;
+        this.parent = parent;
+        this.cancelled = false;
+    }
+
+    /**
+     * Returns a deadline reached after the given duration.
+     *
+     * @param duration the time left
+     * @param unit     the unit of the duration
+     * @return a deadline reached after {@code duration}
+     */
+    public static Deadline after(long duration, TimeUnit unit) {
+        long nanos = unit.toNanos(Math.max(0, duration));
+        if (nanos >= NONE / 2) {
+            return none();
+        }
+        return new Deadline(System.nanoTime() + nanos, null);
+    }
+
+    /**
+     * @return a deadline that is only reached if it is cancelled
+     */
+    public static Deadline none() {
+        return new Deadline(NONE, null);
+    }
+
+    /**
+     * Returns a deadline reached at the same time as this one or when this one is cancelled,
+     * and which can be cancelled without cancelling this one.
+     *
+     * @return a child of this deadline
+     */
+    public Deadline child() {
+        return new Deadline(this.nanos, this);
+    }
+
+    /**
+     * Reaches the deadline immediately for all the threads sharing it.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * @return {@code true} <==> the deadline or one of its parents was cancelled
+     */
+    public boolean isCancelled() {
+        return this.cancelled || (this.parent != null && this.parent.isCancelled());
+    }
+
+    /**
+     * Returns a {@code boolean} telling if the computation should stop : the time is up,
+     * the deadline was cancelled or the calling thread is interrupted.
+     * The interrupted status of the thread is not cleared.
+     *
+     * @return {@code true} <==> the deadline is reached
+     */
+    public boolean expired() {
+        if (this.isCancelled()) {
+            return true;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            this.cancelled = true;
+            return true;
+        }
+        return this.nanos != NONE && System.nanoTime() - this.nanos >= 0;
+    }
+
+    /**
+     * @param unit the unit of the result
+     * @return the time left before the deadline, {@code 0} if it is reached and {@code Long.MAX_VALUE} if there is no limit
+     */
+    public long remaining(TimeUnit unit) {
+        if (this.isCancelled()) {
+            return 0;
+        }
+        if (this.nanos == NONE) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(Math.max(0, this.nanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,88 @@
+package utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compact encodings of the arrays used by state representations.
+ *
+ * @author Vianney Coppé
+ */
+public class Encoding {
+
+    /**
+     * Encodes an array in which most of the values are {@code 0} :
+     * only the non-zero values are written, each one preceded by the gap from the previous one as a varint.
+     *
+     * @param values an array of values
+     * @return the encoded non-zero values
+     */
+    public static byte[] encodeSparse(double[] values) {
+        int nonZeros = 0;
+        for (double value : values) {
+            if (Double.doubleToRawLongBits(value) != 0) {
+                nonZeros++;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(5 + 13 * nonZeros);
+        writeVarInt(buffer, nonZeros);
+        int previous = -1;
+        for (int i = 0; i < values.length; i++) {
+            if (Double.doubleToRawLongBits(values[i]) != 0) {
+                writeVarInt(buffer, i - previous);
+                buffer.putDouble(values[i]);
+                previous = i;
+            }
+        }
+
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Decodes an array encoded by {@code encodeSparse}.
+     *
+     * @param bytes  the encoded values
+     * @param length the length of the array
+     * @return the array of values
+     */
+    public static double[] decodeSparse(byte[] bytes, int length) {
+        double[] values = new double[length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int nonZeros = readVarInt(buffer);
+        int i = -1;
+        for (int k = 0; k < nonZeros; k++) {
+            i += readVarInt(buffer);
+            values[i] = buffer.getDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Writes a non-negative integer on 1 to 5 bytes, 7 bits at a time.
+     */
+    public static void writeVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads an integer written by {@code writeVarInt}.
+     */
+    public static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,535 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Relaxed concurrent priority queue made of several heaps protected by their own lock.
+ * Elements are inserted in a random heap and removed from the best of two random heaps,
+ * so that the removal order is only approximately the one given by the comparator
+ * but the threads rarely contend for the same lock.
+ * With a single heap, it behaves as a synchronized {@code PriorityQueue}.
+ * <p>
+ * Each heap also keeps track of the maximum bound of its elements so that the maximum bound
+ * over the whole queue can be read cheaply, and indexes its elements by bound so that the elements
+ * with a low bound are removed without scanning nor rebuilding the heaps.
+ *
+ * @author Vianney Coppé
+ */
+public class MultiQueue<E> {
+
+    private static final int SPIN_ATTEMPTS = 4; // the number of contended heaps tried before blocking on a lock
+
+    private final List<Heap<E>> heaps;
+    private volatile Comparator<? super E> comparator;
+    private ToDoubleFunction<? super E> bound;
+    private AtomicInteger size;
+
+    /**
+     * Returns an empty queue.
+     *
+     * @param nHeaps     the number of heaps, typically a small multiple of the number of threads
+     * @param comparator the order of the elements, the least element is removed first
+     * @param bound      the bound of an element, used to maintain the maximum bound of the queue,
+     *                   it should not change while the element is in the queue
+     */
+    public MultiQueue(int nHeaps, Comparator<? super E> comparator, ToDoubleFunction<? super E> bound) {
+        this.heaps = new ArrayList<>(nHeaps);
+        for (int i = 0; i < nHeaps; i++) {
+            this.heaps.add(new Heap<>(comparator));
+        }
+        this.comparator = comparator;
+        this.bound = bound;
+        this.size = new AtomicInteger();
+    }
+
+    /**
+     * Adds an element to the queue.
+     *
+     * @param e the element to be added
+     */
+    public void add(E e) {
+        Heap<E> heap = this.lockRandom();
+        try {
+            heap.add(e, this.bound.applyAsDouble(e));
+            this.size.incrementAndGet();
+        } finally {
+            heap.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds all the elements to a single heap, taking only one lock.
+     *
+     * @param es the elements to be added
+     */
+    public void addAll(Collection<? extends E> es) {
+        if (es.isEmpty()) {
+            return;
+        }
+
+        Heap<E> heap = this.lockRandom();
+        try {
+            for (E e : es) {
+                heap.add(e, this.bound.applyAsDouble(e));
+            }
+            this.size.addAndGet(es.size());
+        } finally {
+            heap.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes an element close to the least one : the best top of two random heaps.
+     * After a few attempts on contended or empty heaps, the heaps are scanned in order, waiting for their locks.
+     *
+     * @return an element of the queue or {@code null} if all the heaps were found empty
+     */
+    public E poll() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int attempt = 0; attempt < SPIN_ATTEMPTS && this.size.get() > 0; attempt++) {
+            Heap<E> h1 = this.heaps.get(random.nextInt(this.heaps.size()));
+            Heap<E> h2 = this.heaps.get(random.nextInt(this.heaps.size()));
+            E top1 = h1.top, top2 = h2.top;
+
+            Heap<E> heap;
+            if (top1 == null) {
+                heap = h2;
+            } else if (top2 == null || this.comparator.compare(top1, top2) <= 0) {
+                heap = h1;
+            } else {
+                heap = h2;
+            }
+
+            if (heap.top != null && heap.lock.tryLock()) {
+                try {
+                    E e = heap.poll();
+                    if (e != null) {
+                        this.size.decrementAndGet();
+                        return e;
+                    }
+                } finally {
+                    heap.lock.unlock();
+                }
+            }
+        }
+
+        // fall back on a scan of all the heaps not to miss any element
+        for (Heap<E> heap : this.heaps) {
+            if (heap.top != null) {
+                heap.lock.lock();
+                try {
+                    E e = heap.poll();
+                    if (e != null) {
+                        this.size.decrementAndGet();
+                        return e;
+                    }
+                } finally {
+                    heap.lock.unlock();
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Changes the order of the elements, rebuilding all the heaps.
+     * The heaps are all locked in the same order, so that the elements are not removed in the meantime.
+     *
+     * @param comparator the new order of the elements, the least element is removed first
+     */
+    public void reorder(Comparator<? super E> comparator) {
+        for (Heap<E> heap : this.heaps) {
+            heap.lock.lock();
+        }
+        try {
+            this.comparator = comparator;
+            for (Heap<E> heap : this.heaps) {
+                heap.reorder(comparator);
+            }
+        } finally {
+            for (Heap<E> heap : this.heaps) {
+                heap.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes all the elements whose bound is not greater than the given value.
+     * Only the heaps that may contain such an element are locked, and the elements are taken from them
+     * by increasing bound, so that the time spent depends on the number of elements removed.
+     *
+     * @param threshold the value below which the elements are removed
+     * @return the number of elements removed
+     */
+    public int removeBelow(double threshold) {
+        return this.removeBelow(threshold, e -> {
+        });
+    }
+
+    /**
+     * Removes all the elements whose bound is not greater than the given value and gives them to the consumer.
+     * Only the heaps that may contain such an element are locked, and the elements are taken from them
+     * by increasing bound, so that the time spent depends on the number of elements removed.
+     *
+     * @param threshold the value below which the elements are removed
+     * @param removed   the consumer of the removed elements, called while a heap is locked
+     * @return the number of elements removed
+     */
+    public int removeBelow(double threshold, Consumer<? super E> removed) {
+        int n = 0;
+        for (Heap<E> heap : this.heaps) {
+            if (heap.minBound <= threshold) {
+                heap.lock.lock();
+                try {
+                    n += heap.removeBelow(threshold, removed);
+                } finally {
+                    heap.lock.unlock();
+                }
+            }
+        }
+        this.size.addAndGet(-n);
+        return n;
+    }
+
+    /**
+     * Removes exactly the given number of elements with the least bounds and gives them to the consumer,
+     * the ties being broken arbitrarily. All the heaps are locked in the same order, so that the elements
+     * selected are the least ones of the whole queue.
+     *
+     * @param n       the number of elements to remove
+     * @param removed the consumer of the removed elements, called while the heaps are locked
+     * @return the number of elements removed, less than {@code n} if the queue is smaller
+     */
+    public int removeLeast(int n, Consumer<? super E> removed) {
+        for (Heap<E> heap : this.heaps) {
+            heap.lock.lock();
+        }
+        try {
+            List<Entry<E>> entries = new ArrayList<>();
+            for (Heap<E> heap : this.heaps) {
+                entries.addAll(heap.entries());
+            }
+            n = Math.min(n, entries.size());
+            if (n <= 0) {
+                return 0;
+            }
+
+            double[] bounds = new double[entries.size()];
+            for (int i = 0; i < bounds.length; i++) {
+                bounds[i] = entries.get(i).bound;
+            }
+            int[] least = Selection.least(bounds, bounds.length, n);
+            Arrays.sort(least);
+
+            int i = 0, offset = 0;
+            for (Heap<E> heap : this.heaps) {
+                offset += heap.size;
+                for (; i < least.length && least[i] < offset; i++) {
+                    Entry<E> entry = entries.get(least[i]);
+                    heap.remove(entry);
+                    removed.accept(entry.e);
+                }
+                heap.settle();
+            }
+            this.size.addAndGet(-n);
+            return n;
+        } finally {
+            for (Heap<E> heap : this.heaps) {
+                heap.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns all the elements in the queue, in no particular order, the heaps being locked one at a time.
+     *
+     * @return a list with the elements of the queue
+     */
+    public List<E> elements() {
+        List<E> elements = new ArrayList<>(Math.max(0, this.size.get()));
+        for (Heap<E> heap : this.heaps) {
+            heap.lock.lock();
+            try {
+                for (Entry<E> entry : heap.entries()) {
+                    elements.add(entry.e);
+                }
+            } finally {
+                heap.lock.unlock();
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Returns the bounds of all the elements in the queue, the heaps being locked one at a time.
+     *
+     * @return an array with the bound of each element
+     */
+    public double[] bounds() {
+        double[] bounds = new double[Math.max(0, this.size.get())];
+        int n = 0;
+        for (Heap<E> heap : this.heaps) {
+            heap.lock.lock();
+            try {
+                for (Entry<E> entry : heap.entries()) {
+                    if (n == bounds.length) {
+                        bounds = Arrays.copyOf(bounds, 2 * n + 1);
+                    }
+                    bounds[n++] = entry.bound;
+                }
+            } finally {
+                heap.lock.unlock();
+            }
+        }
+        return Arrays.copyOf(bounds, n);
+    }
+
+    /**
+     * Returns the maximum bound of the elements in the queue.
+     * Only the heaps whose maximum element has been removed since the last call are scanned.
+     *
+     * @return the maximum bound or {@code -Double.MAX_VALUE} if the queue is empty
+     */
+    public double maxBound() {
+        double max = -Double.MAX_VALUE;
+        for (Heap<E> heap : this.heaps) {
+            if (heap.stale) {
+                heap.lock.lock();
+                try {
+                    heap.refresh();
+                } finally {
+                    heap.lock.unlock();
+                }
+            }
+            max = Math.max(max, heap.maxBound);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of elements in the queue.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    /**
+     * Returns a {@code boolean} telling if the queue is empty.
+     *
+     * @return {@code true} <==> the queue contains no element
+     */
+    public boolean isEmpty() {
+        return this.size.get() == 0;
+    }
+
+    /**
+     * Locks a random heap, trying a few other ones if the locks are contended, then waiting for the last one
+     * so that a thread does not spin while the threads holding the locks are not scheduled.
+     *
+     * @return a locked heap
+     */
+    private Heap<E> lockRandom() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < SPIN_ATTEMPTS; attempt++) {
+            Heap<E> heap = this.heaps.get(random.nextInt(this.heaps.size()));
+            if (heap.lock.tryLock()) {
+                return heap;
+            }
+        }
+
+        Heap<E> heap = this.heaps.get(random.nextInt(this.heaps.size()));
+        heap.lock.lock();
+        return heap;
+    }
+
+    /**
+     * An element of a heap with its bound. An element removed through one of the two orders of the heap
+     * is only marked, and is dropped from the other order once it reaches its top or when it is compacted.
+     */
+    private static final class Entry<E> {
+
+        final E e;
+        final double bound;
+        boolean removed;
+
+        Entry(E e, double bound) {
+            this.e = e;
+            this.bound = bound;
+            this.removed = false;
+        }
+    }
+
+    /**
+     * A heap of the queue, ordered both by the comparator of the queue and by increasing bound,
+     * so that the elements with the least bounds are removed without scanning the heap.
+     * Each order holds the live elements and the ones removed through the other order since it was last compacted,
+     * it is compacted once the removed elements outnumber the live ones.
+     * The top and the bounds are published in volatile fields to be read without locking,
+     * the maximum bound is only recomputed when requested after the removal of the element reaching it.
+     */
+    private static class Heap<E> {
+
+        final ReentrantLock lock;
+        PriorityQueue<Entry<E>> queue;
+        PriorityQueue<Entry<E>> byBound;
+        int size; // the number of live elements
+        volatile E top;
+        volatile double maxBound;
+        volatile double minBound;
+        volatile boolean stale;
+
+        Heap(Comparator<? super E> comparator) {
+            this.lock = new ReentrantLock();
+            this.queue = new PriorityQueue<>(order(comparator));
+            this.byBound = new PriorityQueue<>((a, b) -> Double.compare(a.bound, b.bound));
+            this.size = 0;
+            this.top = null;
+            this.maxBound = -Double.MAX_VALUE;
+            this.minBound = Double.MAX_VALUE;
+            this.stale = false;
+        }
+
+        private static <E> Comparator<Entry<E>> order(Comparator<? super E> comparator) {
+            return (a, b) -> comparator.compare(a.e, b.e);
+        }
+
+        void add(E e, double bound) {
+            Entry<E> entry = new Entry<>(e, bound);
+            this.queue.add(entry);
+            this.byBound.add(entry);
+            this.size++;
+            if (bound > this.maxBound) {
+                this.maxBound = bound;
+            }
+            this.publish();
+        }
+
+        E poll() {
+            Entry<E> entry = this.queue.poll();
+            if (entry == null) {
+                return null;
+            }
+            this.remove(entry);
+            this.settle();
+            return entry.e;
+        }
+
+        void reorder(Comparator<? super E> comparator) {
+            PriorityQueue<Entry<E>> queue = new PriorityQueue<>(Math.max(1, this.size), order(comparator));
+            for (Entry<E> entry : this.queue) {
+                if (!entry.removed) {
+                    queue.add(entry);
+                }
+            }
+            this.queue = queue;
+            this.publish();
+        }
+
+        /**
+         * Removes the elements whose bound is not greater than the threshold, taking them in order of increasing bound.
+         */
+        int removeBelow(double threshold, Consumer<? super E> sink) {
+            int removed = 0;
+            while (!this.byBound.isEmpty() && this.byBound.peek().bound <= threshold) {
+                Entry<E> entry = this.byBound.poll();
+                if (!entry.removed) {
+                    this.remove(entry);
+                    sink.accept(entry.e);
+                    removed++;
+                }
+            }
+            this.settle();
+            return removed;
+        }
+
+        /**
+         * @return the live elements, in the order of the iteration over the heap
+         */
+        List<Entry<E>> entries() {
+            List<Entry<E>> entries = new ArrayList<>(this.size);
+            for (Entry<E> entry : this.queue) {
+                if (!entry.removed) {
+                    entries.add(entry);
+                }
+            }
+            return entries;
+        }
+
+        /**
+         * Marks a live element as removed, it stays in the orders until it reaches their top or they are compacted.
+         * {@code settle} should be called once the elements are removed.
+         */
+        void remove(Entry<E> entry) {
+            entry.removed = true;
+            this.size--;
+            if (entry.bound >= this.maxBound) {
+                this.stale = true;
+            }
+        }
+
+        /**
+         * Drops the removed elements from the tops of the orders and compacts the orders holding too many of them.
+         */
+        void settle() {
+            if (this.size == 0) {
+                this.queue.clear();
+                this.byBound.clear();
+                this.maxBound = -Double.MAX_VALUE;
+                this.stale = false;
+            } else {
+                this.queue = compact(this.queue, this.size);
+                this.byBound = compact(this.byBound, this.size);
+            }
+            this.publish();
+        }
+
+        private static <E> PriorityQueue<Entry<E>> compact(PriorityQueue<Entry<E>> order, int size) {
+            if (order.size() > 2 * size) {
+                PriorityQueue<Entry<E>> compacted = new PriorityQueue<>(size, order.comparator());
+                for (Entry<E> entry : order) {
+                    if (!entry.removed) {
+                        compacted.add(entry);
+                    }
+                }
+                return compacted;
+            }
+
+            while (order.peek().removed) {
+                order.poll();
+            }
+            return order;
+        }
+
+        private void publish() {
+            Entry<E> first = this.queue.peek();
+            Entry<E> least = this.byBound.peek();
+            this.top = first == null ? null : first.e;
+            this.minBound = least == null ? Double.MAX_VALUE : least.bound;
+        }
+
+        void refresh() {
+            double max = -Double.MAX_VALUE;
+            for (Entry<E> entry : this.queue) {
+                if (!entry.removed) {
+                    max = Math.max(max, entry.bound);
+                }
+            }
+            this.maxBound = max;
+            this.stale = false;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package utils;
+
+/**
+ * Selection of the nodes of a layer based on primitive keys, without sorting nor boxing.
+ *
+ * @author Vianney Coppé
+ */
+public class Selection {
+
+    /**
+     * Returns the ids in [0, n) of the {@code number} least keys, in no particular order.
+     * Runs in expected linear time by partially partitioning the ids as in quickselect.
+     *
+     * @param keys   the keys indexed by id, only the first {@code n} are considered
+     * @param n      the number of ids
+     * @param number the number of ids to select
+     * @return an array of {@code number} ids
+     */
+    public static int[] least(double[] keys, int n, int number) {
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+
+        int lo = 0, hi = n - 1;
+        while (lo < hi) {
+            double pivot = keys[ids[(lo + hi) >>> 1]];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (keys[ids[i]] < pivot) i++;
+                while (keys[ids[j]] > pivot) j--;
+                if (i <= j) {
+                    int tmp = ids[i];
+                    ids[i] = ids[j];
+                    ids[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (number - 1 <= j) {
+                hi = j;
+            } else if (number - 1 >= i) {
+                lo = i;
+            } else {
+                break;
+            }
+        }
+
+        int[] ret = new int[number];
+        System.arraycopy(ids, 0, ret, 0, number);
+        return ret;
+    }
+
+    /**
+     * Returns the ids in [0, number).
+     *
+     * @param number the number of ids to select
+     * @return an array with the {@code number} first ids
+     */
+    public static int[] first(int number) {
+        int[] ret = new int[number];
+        for (int i = 0; i < number; i++) {
+            ret[i] = i;
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,91 @@
+package utils;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Zobrist hashing of state representations indexed by positions.
+ * The hash of a representation is the xor of a random key for each position,
+ * so that the hash of a successor can be derived from the hash of its parent
+ * by xoring out the old key and xoring in the new key of each position that changed.
+ *
+ * @author Vianney Coppé
+ */
+public class Zobrist {
+
+    private long[] keys;
+
+    /**
+     * Returns random keys for {@code n} positions.
+     * The keys only depend on {@code n} so that the hashes are reproducible.
+     *
+     * @param n the number of positions
+     */
+    public Zobrist(int n) {
+        Random random = new Random(n);
+        this.keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            this.keys[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Returns the key of a position that is set, for representations made of bits.
+     *
+     * @param i a position
+     * @return the key of the position
+     */
+    public long key(int i) {
+        return this.keys[i];
+    }
+
+    /**
+     * Returns the key of a position holding the given value, for representations made of numbers.
+     * A value equal to {@code 0} has a key equal to {@code 0}.
+     *
+     * @param i     a position
+     * @param value the value at this position
+     * @return the key of the position with this value
+     */
+    public long key(int i, double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits == 0 ? 0 : mix(this.keys[i] ^ bits);
+    }
+
+    /**
+     * Computes from scratch the hash of a set of positions.
+     *
+     * @param bs the positions that are set
+     * @return the xor of the keys of the positions that are set
+     */
+    public long hash(BitSet bs) {
+        long hash = 0;
+        for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+            hash ^= this.keys[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Computes from scratch the hash of an array of values.
+     *
+     * @param values the value of each position
+     * @return the xor of the keys of the positions with their value
+     */
+    public long hash(double[] values) {
+        long hash = 0;
+        for (int i = 0; i < values.length; i++) {
+            hash ^= this.key(i, values[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Finalizer of SplitMix64, spreading the bits of the value.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
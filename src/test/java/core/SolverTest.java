@@ -1,11 +1,40 @@
 package core;
 
+import dp.State;
+import examples.MISP;
+import heuristics.AdaptiveWidthSelector;
+import heuristics.BestBoundNodeSelector;
+import heuristics.DeepestNodeSelector;
+import heuristics.FixedWidthSelector;
+import heuristics.HybridNodeSelector;
+import heuristics.MinLPDeleteSelector;
+import heuristics.MinLPMergeSelector;
+import heuristics.NodeSelector;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 public class SolverTest {
 
+    private static final int NARROW_WIDTH = 4;
+
     @BeforeClass
     public static void setUpBeforeClass() throws Exception {
     }
@@ -19,4 +48,566 @@ public class SolverTest {
 
     }
 
+    @Test
+    public void testParallel() {
+        MISP p = johnson();
+
+        Solver solver = solver(p);
+        solver.setNThreads(4);
+
+        assertEquals(Double.compare(solver.solve(60).value(), p.opt), 0);
+    }
+
+    @Test
+    public void testLayerParallelism() {
+        MISP p = johnson();
+
+        Solver solver = solver(p);
+        solver.setLayerParallelism(4);
+
+        assertEquals(Double.compare(solver.solve(60).value(), p.opt), 0);
+    }
+
+    @Test
+    public void testStreaming() {
+        MISP p = johnson();
+
+        Solver solver = solver(p);
+        solver.setStreaming(true);
+
+        assertEquals(Double.compare(solver.solve(60).value(), p.opt), 0);
+    }
+
+    @Test
+    public void testPipelining() {
+        MISP p = johnson();
+
+        for (int nThreads = 1; nThreads <= 2; nThreads++) {
+            Solver solver = solver(p);
+            solver.setPipelining(true);
+            solver.setNThreads(nThreads);
+            assertEquals(Double.compare(solver.solve(60).value(), p.opt), 0);
+            assertEquals(Double.compare(solver.gap(), 0), 0);
+        }
+
+        // the relaxed DDs of the narrow search are all compiled by the helpers of the workers
+        MISP q = hamming();
+        for (int nThreads = 1; nThreads <= 2; nThreads++) {
+            CountingWidthSelector widths = new CountingWidthSelector();
+            Solver solver = narrow(q);
+            solver.setWidthSelector(widths);
+            solver.setPipelining(true);
+            solver.setNThreads(nThreads);
+            assertEquals(Double.compare(solver.solve(60).value(), q.opt), 0);
+            assertEquals(Double.compare(solver.gap(), 0), 0);
+            assertTrue(solver.statistics().nodesExplored() > 1);
+            assertTrue(widths.relaxed.get() > 0);
+            assertEquals(widths.relaxedByHelpers.get(), widths.relaxed.get());
+        }
+
+        // the nodes interrupted in both DDs are explored again by the next slice
+        Solver solver = narrow(p);
+        solver.setPipelining(true);
+        Session session = solver.start();
+        int slices = 0;
+        while (!session.isComplete()) {
+            session.continueFor(20, TimeUnit.MILLISECONDS);
+            slices++;
+        }
+        assertTrue(slices > 1);
+        assertEquals(Double.compare(session.best().value(), p.opt), 0);
+        assertTrue(session.statistics().nodesPruned() > 0);
+        session.close();
+    }
+
+    @Test
+    public void testBatch() {
+        MISP p = johnson();
+
+        for (int nThreads = 1; nThreads <= 2; nThreads++) {
+            Solver solver = solver(p);
+            solver.setBatchSize(4);
+            solver.setNThreads(nThreads);
+            assertEquals(Double.compare(solver.solve(60).value(), p.opt), 0);
+            assertEquals(Double.compare(solver.gap(), 0), 0);
+        }
+
+        // a DD is compiled for each node without batches, and for several nodes at once with them
+        MISP q = hamming();
+        for (int batchSize : new int[]{1, 4}) {
+            for (int nThreads = 1; nThreads <= 2; nThreads++) {
+                CountingWidthSelector widths = new CountingWidthSelector();
+                Solver solver = narrow(q);
+                solver.setWidthSelector(widths);
+                solver.setBatchSize(batchSize);
+                solver.setNThreads(nThreads);
+                assertEquals(Double.compare(solver.solve(60).value(), q.opt), 0);
+                assertEquals(Double.compare(solver.gap(), 0), 0);
+
+                long explored = solver.statistics().nodesExplored();
+                if (batchSize == 1) {
+                    assertEquals(widths.restricted.get(), explored);
+                } else {
+                    assertTrue(widths.restricted.get() < explored);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAdaptiveWidth() {
+        MISP p = johnson();
+
+        for (int nThreads = 1; nThreads <= 2; nThreads++) {
+            Solver solver = solver(p);
+            solver.setWidthSelector(new AdaptiveWidthSelector(1, TimeUnit.MILLISECONDS, 2));
+            solver.setNThreads(nThreads);
+            assertEquals(Double.compare(solver.solve(60).value(), p.opt), 0);
+            assertEquals(Double.compare(solver.gap(), 0), 0);
+            assertTrue(solver.statistics().meanRestrictedWidth() >= 1);
+
+            // the widths chosen are reported by depth
+            Statistics statistics = solver.statistics();
+            assertTrue(statistics.restrictedWidths(0) != null);
+            for (int depth = 0; depth <= statistics.maxDepth(); depth++) {
+                for (Statistics.Widths widths : new Statistics.Widths[]{statistics.restrictedWidths(depth), statistics.relaxedWidths(depth)}) {
+                    if (widths != null) {
+                        assertTrue(widths.count() > 0);
+                        assertTrue(1 <= widths.min() && widths.min() <= widths.mean() && widths.mean() <= widths.max());
+                    }
+                }
+            }
+        }
+
+        Solver solver = solver(p);
+        solver.setMaxWidth(5);
+        assertEquals(Double.compare(solver.solve(60).value(), p.opt), 0);
+        assertTrue(solver.statistics().meanRestrictedWidth() <= 5);
+        assertTrue(solver.statistics().meanRelaxedWidth() <= 5);
+
+        // the fixed selector gives the DDs of a node the number of its free variables as width
+        solver = solver(p);
+        solver.solve(60);
+        Statistics statistics = solver.statistics();
+        assertTrue(statistics.maxDepth() > 0);
+        assertEquals(statistics.restrictedWidths(statistics.maxDepth() + 1), null);
+        for (int depth = 0; depth <= statistics.maxDepth(); depth++) {
+            Statistics.Widths widths = statistics.restrictedWidths(depth);
+            if (widths != null) {
+                assertEquals(widths.min(), p.nVariables() - depth);
+                assertEquals(widths.max(), p.nVariables() - depth);
+            }
+        }
+    }
+
+    @Test
+    public void testNodeSelectors() {
+        MISP p = johnson();
+
+        NodeSelector[] selectors = {new BestBoundNodeSelector(), new DeepestNodeSelector(), new HybridNodeSelector(4)};
+        for (NodeSelector nodeSelector : selectors) {
+            Solver solver = solver(p);
+            solver.setNodeSelector(nodeSelector);
+
+            assertEquals(Double.compare(solver.solve(60).value(), p.opt), 0);
+        }
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        MISP p = johnson();
+        File directory = Files.createTempDirectory("spill").toFile();
+
+        Solver solver = solver(p);
+        solver.setSpill(4, directory);
+
+        assertEquals(Double.compare(solver.solve(60).value(), p.opt), 0);
+        assertEquals(directory.list().length, 0);
+
+        // the frontier of the narrow search outgrows the budget, the spilled nodes stay on disk between the slices
+        MISP q = hamming();
+        solver = narrow(q);
+        solver.setSpill(4, directory);
+        Session session = solver.start();
+        int spilled = 0;
+        while (!session.isComplete()) {
+            session.continueFor(1, TimeUnit.MILLISECONDS);
+            if (directory.list().length > 0) {
+                spilled++;
+            }
+        }
+        assertTrue(spilled > 0);
+        assertEquals(Double.compare(session.best().value(), q.opt), 0);
+        assertEquals(Double.compare(session.gap(), 0), 0);
+        session.close();
+        assertEquals(directory.list().length, 0);
+        directory.delete();
+    }
+
+    @Test
+    public void testMemoryGovernor() throws IOException {
+        MISP p = johnson();
+        File directory = Files.createTempDirectory("spill").toFile();
+
+        // with a tiny threshold, every collection leaves the heap under pressure
+        List<Long> thresholds = collectionUsageThresholds();
+        List<Long> during = new ArrayList<>();
+        Solver solver = solver(p);
+        solver.setSpill(1 << 20, directory);
+        solver.setMemoryThreshold(1e-6);
+        solver.addListener(new SolverListener() {
+            public void solutionFound(double value, Variable[] assignment, long elapsed) {
+                System.gc();
+                during.addAll(collectionUsageThresholds());
+            }
+        });
+
+        assertEquals(Double.compare(solver.solve(60).value(), p.opt), 0);
+        assertEquals(Double.compare(solver.gap(), 0), 0);
+        assertTrue(solver.statistics().memoryReliefs() > 0);
+        assertFalse(solver.statistics().ranOutOfMemory());
+        assertEquals(directory.list().length, 0);
+
+        // the governor reads the memory pools without changing the thresholds of the application
+        assertFalse(during.isEmpty());
+        for (int i = 0; i < during.size(); i++) {
+            assertEquals(during.get(i), thresholds.get(i % thresholds.size()));
+        }
+        assertEquals(collectionUsageThresholds(), thresholds);
+        directory.delete();
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        MISP p = johnson();
+        File checkpoint = File.createTempFile("checkpoint", ".bin");
+
+        Solver solver = solver(p);
+        solver.setCheckpoint(checkpoint, 60);
+        solver.solve(0); // interrupted during the first node, which is saved in the checkpoint
+
+        Solver resumed = solver(p);
+        resumed.setCheckpoint(checkpoint, 60);
+        assertEquals(Double.compare(resumed.resume(checkpoint, 60).value(), p.opt), 0);
+        assertTrue(resumed.statistics().nodesExplored() > solver.statistics().nodesExplored());
+
+        // the final checkpoint has no node left to explore
+        Solver done = solver(p);
+        assertEquals(Double.compare(done.resume(checkpoint, 60).value(), p.opt), 0);
+        assertEquals(done.statistics().nodesExplored(), resumed.statistics().nodesExplored());
+
+        // the checkpoint of a narrow search stopped midway holds the nodes left, from which the search goes on
+        Solver stopped = narrow(p);
+        stopped.setCheckpoint(checkpoint, 60);
+        Session session = stopped.start();
+        session.continueFor(50, TimeUnit.MILLISECONDS);
+        assertFalse(session.isComplete());
+        session.close();
+
+        Checkpoint saved = Checkpoint.read(checkpoint, p.root(), p.nVariables());
+        assertTrue(saved.size() > 0);
+        assertTrue(saved.explored > 0);
+        assertEquals(saved.explored, stopped.statistics().nodesExplored());
+
+        resumed = narrow(p);
+        assertEquals(Double.compare(resumed.resume(checkpoint, 60).value(), p.opt), 0);
+        assertEquals(Double.compare(resumed.gap(), 0), 0);
+        assertTrue(resumed.statistics().nodesExplored() > saved.explored);
+        checkpoint.delete();
+    }
+
+    @Test
+    public void testSession() {
+        MISP p = johnson();
+
+        Solver solver = solver(p);
+        Session session = solver.start();
+        assertFalse(session.isComplete());
+        assertEquals(Double.compare(session.gap(), Double.POSITIVE_INFINITY), 0);
+        assertEquals(Double.compare(Session.gap(-Double.MAX_VALUE, -Double.MAX_VALUE), Double.POSITIVE_INFINITY), 0);
+        assertEquals(Double.compare(Session.gap(10, Double.POSITIVE_INFINITY), Double.POSITIVE_INFINITY), 0);
+
+        int slices = 0;
+        double upperBound = Double.POSITIVE_INFINITY;
+        while (!session.isComplete()) {
+            session.continueFor(50, TimeUnit.MILLISECONDS);
+            assertTrue(session.upperBound() <= upperBound);
+            upperBound = session.upperBound();
+            assertTrue(session.upperBound() >= p.opt);
+            assertTrue(session.lowerBound() <= p.opt);
+            assertTrue(session.gap() >= 0);
+            slices++;
+        }
+        assertTrue(slices > 1);
+
+        assertEquals(Double.compare(session.best().value(), p.opt), 0);
+        assertEquals(Double.compare(session.upperBound(), p.opt), 0);
+        assertEquals(Double.compare(session.gap(), 0), 0);
+        session.close();
+        assertEquals(Double.compare(session.best().value(), p.opt), 0);
+    }
+
+    @Test
+    public void testFrontierBound() throws InterruptedException {
+        MISP p = johnson();
+
+        // the nodes being explored count in the bound although the frontier is not tracked
+        Frontier frontier = new Frontier(1, new BestBoundNodeSelector());
+        State first = p.root().copy();
+        first.setRelaxedValue(20);
+        State second = p.root().copy();
+        second.setRelaxedValue(10);
+        frontier.push(first);
+        frontier.push(second);
+
+        State polled = frontier.poll();
+        assertEquals(Double.compare(frontier.bestBound(), 20), 0);
+        frontier.done(polled);
+        assertEquals(Double.compare(frontier.bestBound(), 10), 0);
+        frontier.done(frontier.poll());
+        assertTrue(frontier.isExhausted());
+    }
+
+    @Test
+    public void testShortSlices() {
+        MISP p = johnson();
+
+        // the root is interrupted by the first slice, the nodes suspended must not be pruned by the cache
+        Solver solver = solver(p);
+        Session session = solver.start();
+        session.continueFor(0, TimeUnit.MILLISECONDS);
+        assertFalse(session.isComplete());
+
+        int slices = 0;
+        while (!session.isComplete() && slices < 100000) {
+            session.continueFor(5, TimeUnit.MILLISECONDS);
+            slices++;
+        }
+        assertTrue(session.isComplete());
+        assertTrue(session.best() != null);
+        assertEquals(Double.compare(session.best().value(), p.opt), 0);
+        assertTrue(session.statistics().nodesExplored() > 1);
+        session.close();
+
+        // the narrow search is interrupted many times, each slice goes on from the nodes left by the previous one
+        MISP q = hamming();
+        solver = narrow(q);
+        session = solver.start();
+        session.continueFor(0, TimeUnit.MILLISECONDS);
+        assertFalse(session.isComplete());
+        assertTrue(session.best() == null);
+        assertTrue(session.upperBound() > q.opt);
+
+        slices = 0;
+        long explored = 0;
+        while (!session.isComplete()) {
+            session.continueFor(1, TimeUnit.MILLISECONDS);
+            assertTrue(session.statistics().nodesExplored() >= explored);
+            explored = session.statistics().nodesExplored();
+            slices++;
+        }
+        assertTrue(slices > 1);
+        assertEquals(Double.compare(session.best().value(), q.opt), 0);
+        assertEquals(Double.compare(session.gap(), 0), 0);
+        session.close();
+    }
+
+    @Test
+    public void testListener() {
+        MISP p = johnson();
+        List<Double> solutions = new ArrayList<>();
+        List<Double> bounds = new ArrayList<>();
+        double[] stopped = new double[2];
+
+        Solver solver = solver(p);
+        solver.setNThreads(2);
+        solver.setReportInterval(1);
+        solver.addListener(new SolverListener() {
+            public void solutionFound(double value, Variable[] assignment, long elapsed) {
+                solutions.add(value);
+            }
+
+            public void boundImproved(double upperBound, long elapsed) {
+                bounds.add(upperBound);
+            }
+
+            public void stopped(double lowerBound, double upperBound, long elapsed) {
+                stopped[0] = lowerBound;
+                stopped[1] = upperBound;
+            }
+        });
+        solver.solve(60);
+
+        // the events are delivered by a single thread, in order
+        for (int i = 1; i < solutions.size(); i++) {
+            assertTrue(solutions.get(i) > solutions.get(i - 1));
+        }
+        for (int i = 1; i < bounds.size(); i++) {
+            assertTrue(bounds.get(i) < bounds.get(i - 1));
+        }
+        assertEquals(Double.compare(solutions.get(solutions.size() - 1), p.opt), 0);
+        assertEquals(Double.compare(bounds.get(bounds.size() - 1), p.opt), 0);
+        assertEquals(Double.compare(stopped[0], p.opt), 0);
+        assertEquals(Double.compare(stopped[1], p.opt), 0);
+    }
+
+    @Test
+    public void testConsoleReporter() {
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed));
+        try {
+            ConsoleReporter reporter = new ConsoleReporter(0);
+            reporter.boundImproved(20, 1);
+            reporter.solutionFound(10, new Variable[0], 2);
+        } finally {
+            System.setOut(out);
+        }
+
+        String[] lines = printed.toString().split(System.lineSeparator());
+        assertEquals(lines.length, 2);
+        assertTrue(lines[0].startsWith("Incumbent : none  bound : 20.0  gap : Infinity"));
+        assertTrue(lines[1].startsWith("Incumbent : 10.0  bound : 20.0  gap : 0.5"));
+    }
+
+    @Test
+    public void testGapLimit() {
+        MISP p = johnson();
+
+        Solver solver = solver(p);
+        solver.setGapLimit(0.1);
+        solver.setReportInterval(1);
+        Session session = solver.start();
+        session.continueFor(60, TimeUnit.SECONDS);
+
+        assertTrue(session.gap() < 0.1);
+        assertTrue(session.upperBound() >= p.opt);
+        session.close();
+    }
+
+    @Test
+    public void testTolerance() {
+        MISP p = johnson();
+
+        Solver exact = solver(p);
+        exact.solve(60);
+        assertEquals(Double.compare(exact.gap(), 0), 0);
+
+        Solver relative = solver(p);
+        relative.setTolerance(0.5, 0);
+        double value = relative.solve(60).value();
+        assertTrue(value * 1.5 >= p.opt);
+        assertTrue(relative.gap() <= 0.5 / 1.5 + 1e-9);
+        assertTrue(relative.statistics().nodesExplored() <= exact.statistics().nodesExplored());
+
+        // a search completed within the tolerance has a positive gap but is not reported as stopped
+        Solver absolute = solver(p);
+        absolute.setTolerance(0, 2);
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed));
+        try {
+            assertTrue(absolute.solve(60).value() + 2 >= p.opt);
+        } finally {
+            System.setOut(out);
+        }
+        assertTrue(absolute.statistics().nodesExplored() <= exact.statistics().nodesExplored());
+        assertTrue(printed.toString().contains("Search completed"));
+        assertFalse(printed.toString().contains("Search stopped"));
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        MISP p = johnson();
+
+        Solver solver = narrow(p);
+        solver.setNThreads(2);
+        Session session = solver.start();
+
+        Thread canceller = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                return;
+            }
+            solver.cancel();
+        });
+        long start = System.currentTimeMillis();
+        canceller.start();
+        session.continueFor(60, TimeUnit.SECONDS);
+        canceller.join();
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertFalse(session.isComplete());
+        long explored = session.statistics().nodesExplored();
+
+        // the nodes interrupted by the cancellation were put back in the frontier
+        session.continueFor(60, TimeUnit.SECONDS);
+        assertTrue(session.isComplete());
+        assertEquals(Double.compare(session.best().value(), p.opt), 0);
+        assertEquals(Double.compare(session.gap(), 0), 0);
+        assertTrue(session.statistics().nodesExplored() > explored);
+        session.close();
+    }
+
+    /**
+     * @return an instance whose root DDs are nearly exact when their width is not bounded
+     */
+    private static MISP johnson() {
+        return MISP.readDIMACS("data/misp/pass/johnson8-4-4.clq");
+    }
+
+    /**
+     * @return a small instance that is solved quickly even with narrow DDs
+     */
+    private static MISP hamming() {
+        return MISP.readDIMACS("data/misp/pass/hamming6-4.clq");
+    }
+
+    /**
+     * @return the collection usage thresholds of the heap pools supporting them
+     */
+    private static List<Long> collectionUsageThresholds() {
+        List<Long> thresholds = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()) {
+                thresholds.add(pool.getCollectionUsageThreshold());
+            }
+        }
+        return thresholds;
+    }
+
+    private static Solver solver(MISP p) {
+        return new Solver(p, new MinLPMergeSelector(), new MinLPDeleteSelector(), new MISP.MISPVariableSelector());
+    }
+
+    /**
+     * @return a solver whose DDs are too narrow to be exact, so that the search branches and prunes nodes
+     */
+    private static Solver narrow(MISP p) {
+        Solver solver = solver(p);
+        solver.setMaxWidth(NARROW_WIDTH);
+        return solver;
+    }
+
+    /**
+     * Width selector counting the DDs compiled and the relaxed ones compiled by the helpers of the pipelined workers.
+     */
+    private static class CountingWidthSelector extends FixedWidthSelector {
+
+        private final AtomicInteger restricted = new AtomicInteger();
+        private final AtomicInteger relaxed = new AtomicInteger();
+        private final AtomicInteger relaxedByHelpers = new AtomicInteger();
+
+        public void restrictedCompiled(State state, int width, long time, boolean exact) {
+            this.restricted.incrementAndGet();
+        }
+
+        public void relaxedCompiled(State state, int width, long time, boolean pruned) {
+            this.relaxed.incrementAndGet();
+            if (Thread.currentThread().getName().endsWith("-relaxed")) {
+                this.relaxedByHelpers.incrementAndGet();
+            }
+        }
+    }
+
 }
@@ -0,0 +1,106 @@
+package core;
+
+import dp.State;
+import examples.Edge;
+import examples.MISP;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class ThresholdCacheTest {
+
+    private static final int N = 10;
+
+    /**
+     * @param free  the free vertices, as the bits of a long
+     * @param value the value of the state
+     * @param bound the ids of the variables bound by the state, in the order in which they are bound
+     */
+    private static State state(MISP p, long free, double value, int... bound) {
+        Variable[] variables = new Variable[N];
+        for (int i = 0; i < N; i++) {
+            variables[i] = new Variable(i, 2);
+        }
+
+        State state = new State(p.new MISPState(BitSet.valueOf(new long[]{free})), variables, value);
+        for (int id : bound) {
+            state.setLayerNumber(state.layerNumber() + 1);
+            state.assign(id, 0);
+        }
+        return state;
+    }
+
+    @Test
+    public void testThreshold() {
+        MISP p = new MISP(N, new double[N], new Edge[0]);
+        ThresholdCache cache = new ThresholdCache(1 << 16);
+
+        assertFalse(cache.prunes(state(p, 31, 10, 9, 8)));
+        cache.update(state(p, 31, 10, 9, 8), 10);
+
+        assertTrue(cache.prunes(state(p, 31, 10, 9, 8)));
+        assertTrue(cache.prunes(state(p, 31, 8, 8, 9))); // the order of the bound variables does not matter
+        assertFalse(cache.prunes(state(p, 31, 11, 9, 8)));
+        assertFalse(cache.prunes(state(p, 31, 8, 9, 8, 7)));
+        assertFalse(cache.prunes(state(p, 15, 8, 9, 8)));
+
+        cache.update(state(p, 31, 10, 9, 8), 12);
+        cache.update(state(p, 31, 10, 9, 8), 9); // thresholds never decrease
+        assertTrue(cache.prunes(state(p, 31, 12, 9, 8)));
+
+        assertEquals(cache.hits(), 3);
+        assertEquals(cache.misses(), 4);
+    }
+
+    @Test
+    public void testDynamicOrder() {
+        // with a dynamic variable order, the same representation at the same layer can bind other variables
+        MISP p = new MISP(N, new double[N], new Edge[0]);
+        ThresholdCache cache = new ThresholdCache(1 << 16);
+
+        cache.update(state(p, 31, 10, 9, 8), 10);
+        assertFalse(cache.prunes(state(p, 31, 10, 9, 7)));
+        assertTrue(cache.prunes(state(p, 31, 10, 8, 9)));
+    }
+
+    @Test
+    public void testEviction() {
+        MISP p = new MISP(N, new double[N], new Edge[0]);
+        long size = 1 << 15;
+        ThresholdCache cache = new ThresholdCache(size);
+
+        for (int free = 0; free < 1000; free++) {
+            cache.update(state(p, free, 0, 9), 0);
+            assertTrue(cache.footprint() <= size);
+        }
+
+        assertTrue(cache.size() > 0);
+        assertTrue(cache.size() < 1000);
+        assertTrue(cache.prunes(state(p, 999, 0, 9)));
+
+        // the entries are measured by the footprint of their representation
+        ThresholdCache larger = new ThresholdCache(size);
+        for (int free = 0; free < 1000; free++) {
+            State state = state(p, free, 0, 9);
+            state.stateRepresentation = new LargeState(p, BitSet.valueOf(new long[]{free}));
+            larger.update(state, 0);
+        }
+        assertTrue(larger.size() < cache.size());
+    }
+
+    /**
+     * MISP state declaring a larger footprint.
+     */
+    private static class LargeState extends MISP.MISPState {
+
+        LargeState(MISP p, BitSet bs) {
+            p.super(bs);
+        }
+
+        public long footprint() {
+            return 1024;
+        }
+    }
+}
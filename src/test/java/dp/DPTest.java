@@ -1,12 +1,25 @@
 package dp;
 
+import examples.MISP;
+import heuristics.MinLPDeleteSelector;
+import heuristics.MinLPMergeSelector;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 public class DPTest {
 
+    private static MISP p;
+
     @BeforeClass
     public static void setUpBeforeClass() throws Exception {
+        p = MISP.readDIMACS("data/misp/pass/johnson8-4-4.clq");
     }
 
     @Test
@@ -14,4 +27,140 @@ public class DPTest {
 
     }
 
+    @Test
+    public void testStreaming() {
+        for (int width : new int[]{1, 2, 8, 30}) {
+            DP dp = new DP(p, new MinLPMergeSelector(), new MinLPDeleteSelector(), new MISP.MISPVariableSelector());
+            dp.setStreaming(true);
+
+            State restricted = dp.solveRestricted(width, System.currentTimeMillis(), 60);
+            assertTrue(restricted.value() <= p.opt);
+
+            dp.setInitialState(p.root());
+            State relaxed = dp.solveRelaxed(width, System.currentTimeMillis(), 60);
+            assertTrue(relaxed.value() >= p.opt);
+
+            for (State s : dp.exactCutset()) {
+                assertTrue(s.isExact());
+            }
+        }
+    }
+
+    @Test
+    public void testSharedPrefix() {
+        for (boolean streaming : new boolean[]{false, true}) {
+            for (int width : new int[]{1, 2, 8, 30, 1000}) {
+                DP shared = new DP(p, new MinLPMergeSelector(), new MinLPDeleteSelector(), new MISP.MISPVariableSelector());
+                shared.setStreaming(streaming);
+                State restricted = shared.solveRestricted(width, System.currentTimeMillis(), 60);
+                assertTrue(restricted.value() <= p.opt);
+                if (shared.isExact()) {
+                    assertEquals(Double.compare(restricted.value(), p.opt), 0);
+                    continue;
+                }
+                State relaxed = shared.solveRelaxed(width, System.currentTimeMillis(), 60);
+
+                DP scratch = new DP(p, new MinLPMergeSelector(), new MinLPDeleteSelector(), new MISP.MISPVariableSelector());
+                scratch.setStreaming(streaming);
+                State expected = scratch.solveRelaxed(width, System.currentTimeMillis(), 60);
+
+                assertEquals(Double.compare(relaxed.value(), expected.value()), 0);
+                assertEquals(shared.exactCutset().size(), scratch.exactCutset().size());
+                double sum = 0, expectedSum = 0;
+                for (State s : shared.exactCutset()) {
+                    assertTrue(s.isExact());
+                    sum += s.relaxedValue();
+                }
+                for (State s : scratch.exactCutset()) {
+                    expectedSum += s.relaxedValue();
+                }
+                assertEquals(sum, expectedSum, 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testStreamingExact() {
+        DP dp = new DP(p, new MinLPMergeSelector(), new MinLPDeleteSelector(), new MISP.MISPVariableSelector());
+        dp.setStreaming(true);
+
+        assertEquals(Double.compare(dp.solveExact().value(), p.opt), 0);
+        assertTrue(dp.isExact());
+    }
+
+    @Test
+    public void testIncumbent() {
+        DP dp = new DP(p, new MinLPMergeSelector(), new MinLPDeleteSelector(), new MISP.MISPVariableSelector());
+
+        dp.setIncumbent(p.opt - 0.5);
+        assertEquals(Double.compare(dp.solveExact().value(), p.opt), 0);
+
+        dp.setIncumbent(p.opt);
+        dp.setInitialState(p.root());
+        assertNull(dp.solveExact());
+
+        dp.setInitialState(p.root());
+        State relaxed = dp.solveRelaxed(4, System.currentTimeMillis(), 60);
+        assertTrue(relaxed == null || relaxed.value() >= p.opt);
+    }
+
+    @Test
+    public void testLocalBounds() {
+        DP dp = new DP(p, new MinLPMergeSelector(), new MinLPDeleteSelector(), new MISP.MISPVariableSelector());
+        State relaxed = dp.solveRelaxed(4, System.currentTimeMillis(), 60);
+
+        List<State> cutset = new ArrayList<>(dp.exactCutset());
+        double[] bounds = new double[cutset.size()];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = cutset.get(i).relaxedValue();
+            assertTrue(bounds[i] <= relaxed.value());
+        }
+
+        DP exact = new DP(p, new MinLPMergeSelector(), new MinLPDeleteSelector(), new MISP.MISPVariableSelector());
+        for (int i = 0; i < bounds.length; i++) {
+            exact.setInitialState(cutset.get(i));
+            assertTrue(exact.solveExact().value() <= bounds[i]);
+        }
+    }
+
+    @Test
+    public void testMultiRoot() {
+        DP dp = new DP(p, new MinLPMergeSelector(), new MinLPDeleteSelector(), new MISP.MISPVariableSelector());
+        dp.solveRelaxed(4, System.currentTimeMillis(), 60);
+
+        List<State> roots = new ArrayList<>();
+        for (State s : dp.exactCutset()) {
+            List<State> group = new ArrayList<>();
+            for (State other : dp.exactCutset()) {
+                if (s.bindsSameVariables(other)) {
+                    group.add(other);
+                }
+            }
+            if (group.size() > roots.size()) {
+                roots = group;
+            }
+        }
+        assertTrue(roots.size() > 1);
+
+        double best = Double.NEGATIVE_INFINITY;
+        double[] exactValues = new double[roots.size()];
+        DP exact = new DP(p, new MinLPMergeSelector(), new MinLPDeleteSelector(), new MISP.MISPVariableSelector());
+        for (int i = 0; i < roots.size(); i++) {
+            exact.setInitialState(roots.get(i));
+            exactValues[i] = exact.solveExact().value();
+            best = Math.max(best, exactValues[i]);
+        }
+
+        DP multi = new DP(p, new MinLPMergeSelector(), new MinLPDeleteSelector(), new MISP.MISPVariableSelector());
+        multi.setInitialStates(roots);
+        assertEquals(Double.compare(multi.solveExact().value(), best), 0);
+
+        multi.setInitialStates(roots);
+        State relaxed = multi.solveRelaxed(4, System.currentTimeMillis(), 60);
+        assertTrue(relaxed.value() >= best);
+        for (int i = 0; i < roots.size(); i++) {
+            assertTrue(multi.localBound(roots.get(i)) >= exactValues[i]);
+            assertTrue(multi.localBound(roots.get(i)) <= relaxed.value());
+        }
+    }
 }
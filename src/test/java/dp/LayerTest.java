@@ -8,6 +8,13 @@ import heuristics.VariableSelector;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import static org.junit.Assert.*;
 
 public class LayerTest {
@@ -68,6 +75,40 @@ public class LayerTest {
         assertFalse(layer.isExact());
     }
 
+    private static BitSet freeExcept(int i) {
+        BitSet bs = new BitSet(n);
+        bs.flip(0, n);
+        bs.clear(i);
+        return bs;
+    }
+
+    @Test
+    public void testRemoveIds() {
+        Layer layer = new Layer(p, vs, 0);
+        for (int i = 0; i < n; i++) {
+            layer.addState(new State(p.new MISPState(freeExcept(i)), vars, i)); // distinct representations
+        }
+
+        assertEquals(layer.width(), n);
+        for (int id = 0; id < n; id++) {
+            assertEquals(Double.compare(layer.values()[id], layer.state(id).value()), 0);
+        }
+
+        layer.removeStates(new int[]{0, 5});
+
+        assertEquals(layer.width(), n - 2);
+        assertFalse(layer.isExact());
+        for (int id = 0; id < layer.width(); id++) {
+            assertEquals(Double.compare(layer.values()[id], layer.state(id).value()), 0);
+            assertTrue(layer.state(id).value() != 0 && layer.state(id).value() != 5);
+        }
+
+        layer.addState(new State(p.new MISPState(freeExcept(3)), vars, 20)); // update of an existing node
+
+        assertEquals(layer.width(), n - 2);
+        assertEquals(Double.compare(layer.best().value(), 20), 0);
+    }
+
     @Test
     public void testNextLayer() {
         Layer layer = new Layer(p, vs, 0);
@@ -91,4 +132,53 @@ public class LayerTest {
             fail("Should have one state");
         }
     }
+
+    @Test
+    public void testParallelNextLayer() {
+        int n = 30;
+        Random random = new Random(12);
+        double[] weights = new double[n];
+        LinkedList<Edge> edges = new LinkedList<>();
+        for (int i = 0; i < n; i++) {
+            weights[i] = random.nextInt(10);
+            for (int j = i + 1; j < n; j++) {
+                if (random.nextInt(5) == 0) {
+                    edges.add(new Edge(i, j));
+                }
+            }
+        }
+        MISP misp = new MISP(n, weights, edges.toArray(new Edge[0]));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Layer layer = new Layer(misp, vs, misp.root(), 0);
+        boolean parallel = false;
+        int depth = 0;
+
+        while (!layer.isFinal()) {
+            Layer sequential = layer.nextLayer();
+            layer.setPool(pool);
+            Layer next = layer.nextLayer();
+            layer.setPool(null);
+
+            parallel |= layer.width() >= Layer.PARALLEL_THRESHOLD;
+
+            assertEquals(next.width(), sequential.width());
+            assertEquals(next.isExact(), sequential.isExact());
+
+            Map<StateRepresentation, Double> values = new HashMap<>();
+            for (State state : sequential.states()) {
+                values.put(state.stateRepresentation, state.value());
+            }
+            for (State state : next.states()) {
+                assertEquals(Double.compare(state.value(), values.get(state.stateRepresentation)), 0);
+                assertEquals(state.layerNumber(), depth + 1);
+            }
+
+            layer = sequential;
+            depth++;
+        }
+
+        pool.shutdown();
+        assertTrue(parallel);
+    }
 }
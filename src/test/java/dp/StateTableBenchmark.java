@@ -0,0 +1,94 @@
+package dp;
+
+import core.Variable;
+import examples.MISP;
+import heuristics.MinLPDeleteSelector;
+import heuristics.VariableSelector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the duplicate detection of the {@code StateTable} with the previous
+ * {@code HashMap<StateRepresentation, State>} on real layers of a MISP instance.
+ * The successors of a few restricted layers are generated once, then inserted repeatedly in both tables.
+ * Run it with {@code java -cp target/classes:target/test-classes dp.StateTableBenchmark [instance] [width]}.
+ */
+public class StateTableBenchmark {
+
+    private static final int LAYERS = 20;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        String path = args.length > 0 ? args[0] : "data/misp/easy/brock200_2.clq";
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        MISP problem = MISP.readDIMACS(path);
+        VariableSelector selector = new MISP.MISPVariableSelector();
+        List<List<State>> successors = new ArrayList<>();
+        Layer layer = new Layer(problem, selector, problem.root(), 0);
+
+        while (!layer.isFinal() && successors.size() < LAYERS) {
+            Variable var = selector.select(layer.state(0).freeVariables(), layer);
+            List<State> states = new ArrayList<>();
+            for (State state : layer.states()) {
+                Collections.addAll(states, problem.successors(state, var));
+            }
+            successors.add(states);
+
+            layer = layer.nextLayer();
+            if (layer.width() > width) {
+                layer.removeStates(new MinLPDeleteSelector().select(layer, layer.width() - width));
+            }
+        }
+
+        long total = 0;
+        for (List<State> states : successors) {
+            total += states.size();
+        }
+        System.out.println(successors.size() + " layers, " + total + " successors");
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long hashMap = 0, stateTable = 0;
+            int widths = 0;
+
+            for (List<State> states : successors) {
+                long t0 = System.nanoTime();
+                Map<StateRepresentation, State> map = new HashMap<>();
+                for (State state : states) {
+                    if (map.containsKey(state.stateRepresentation)) {
+                        map.get(state.stateRepresentation).value();
+                    } else {
+                        map.put(state.stateRepresentation, state);
+                    }
+                }
+                long t1 = System.nanoTime();
+                StateTable table = new StateTable(16);
+                State[] nodes = new State[states.size()];
+                int n = 0;
+                for (State state : states) {
+                    long hash = StateTable.hash(state.stateRepresentation);
+                    int id = table.putIfAbsent(state.stateRepresentation, hash, n, nodes);
+                    if (id < 0) {
+                        nodes[n++] = state;
+                    } else {
+                        nodes[id].value();
+                    }
+                }
+                long t2 = System.nanoTime();
+
+                hashMap += t1 - t0;
+                stateTable += t2 - t1;
+                widths += map.size() - n;
+            }
+
+            if (widths != 0) {
+                throw new IllegalStateException("Tables disagree");
+            }
+            System.out.println("round " + round + "\tHashMap " + hashMap / total + " ns/state\tStateTable " + stateTable / total + " ns/state");
+        }
+    }
+}
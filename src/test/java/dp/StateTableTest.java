@@ -0,0 +1,60 @@
+package dp;
+
+import core.Variable;
+import examples.Edge;
+import examples.MISP;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class StateTableTest {
+
+    private static int n;
+    private static Variable[] vars;
+    private static MISP p;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        n = 100;
+        vars = new Variable[n];
+        for (int i = 0; i < n; i++) {
+            vars[i] = new Variable(i, 2);
+        }
+        p = new MISP(n, new double[n], new Edge[0]);
+    }
+
+    private static State state(int i) {
+        BitSet bs = new BitSet(n);
+        bs.set(i);
+        return new State(p.new MISPState(bs), vars, i);
+    }
+
+    @Test
+    public void testPutIfAbsent() {
+        StateTable table = new StateTable(1);
+        State[] nodes = new State[n];
+
+        for (int i = 0; i < n; i++) { // grows several times
+            nodes[i] = state(i);
+            long hash = StateTable.hash(nodes[i].stateRepresentation);
+            assertEquals(table.putIfAbsent(nodes[i].stateRepresentation, hash, i, nodes), -1);
+        }
+
+        for (int i = 0; i < n; i++) {
+            State s = state(i);
+            long hash = StateTable.hash(s.stateRepresentation);
+            assertEquals(table.putIfAbsent(s.stateRepresentation, hash, n, nodes), i);
+            assertEquals(table.find(s.stateRepresentation, hash, nodes), i);
+        }
+
+        table.clear();
+        State s = state(0);
+        assertEquals(table.find(s.stateRepresentation, StateTable.hash(s.stateRepresentation), nodes), -1);
+
+        table.put(StateTable.hash(s.stateRepresentation), 0);
+        assertEquals(table.find(s.stateRepresentation, StateTable.hash(s.stateRepresentation), nodes), 0);
+    }
+}
@@ -58,6 +58,33 @@ public class StateTest {
         }
     }
 
+    @Test
+    public void testSuccessor() {
+        StateRepresentation sr = p.new MISPState(n);
+        State s = new State(sr, vars, 0);
+
+        State s1 = s.getSuccessor(sr.copy(), 1, 3, 1);
+        State s2 = s1.getSuccessor(sr.copy(), 1, 5, 0);
+
+        assertEquals(s2.layerNumber(), 2);
+        assertFalse(s.isBound(3));
+        assertTrue(s1.isBound(3));
+        assertFalse(s1.isBound(5));
+        assertTrue(s2.isBound(3));
+        assertTrue(s2.isBound(5));
+
+        assertEquals(s.getVariable(3).value(), -1);
+        assertEquals(s1.getVariable(3).value(), 1);
+        assertEquals(s2.getVariable(3).value(), 1);
+        assertEquals(s2.getVariable(5).value(), 0);
+        assertEquals(s2.freeVariables().length, n - 2);
+
+        Variable[] solution = s2.variables();
+        assertEquals(solution[0].id, 3);
+        assertEquals(solution[1].id, 5);
+        assertEquals(vars[3].value(), -1); // the variables of the root are not modified
+    }
+
     @Test
     public void testUpdate() {
         StateRepresentation sr = p.new MISPState(n);
@@ -132,4 +159,86 @@ public class StateTest {
         assertFalse(s.equals(s3));
 
     }
+
+    @Test
+    public void testIncrementalHash() {
+        Edge[] edges = {new Edge(0, 1), new Edge(1, 2), new Edge(2, 3)};
+        MISP q = new MISP(4, new double[]{1, 1, 1, 1}, edges);
+
+        State root = q.root();
+        State[] successors = q.successors(root, root.getVariable(1));
+
+        BitSet bs = new BitSet(4);
+        bs.set(0, 4);
+        bs.clear(1);
+        assertEquals(successors[0].stateRepresentation.longHashCode(), q.new MISPState(bs).longHashCode());
+        assertEquals(successors[0].stateRepresentation, q.new MISPState(bs));
+
+        bs.clear(0);
+        bs.clear(2);
+        assertEquals(successors[1].stateRepresentation.longHashCode(), q.new MISPState(bs).longHashCode());
+        assertEquals(successors[1].stateRepresentation, q.new MISPState(bs));
+
+        State merged = q.merge(new State[]{successors[1], successors[0]});
+        assertEquals(successors[1].stateRepresentation, q.new MISPState(bs)); // merging leaves the states untouched
+
+        bs.set(0, 4);
+        bs.clear(1);
+        assertEquals(merged.stateRepresentation.longHashCode(), q.new MISPState(bs).longHashCode());
+        assertEquals(merged.stateRepresentation, q.new MISPState(bs));
+    }
+
+    @Test
+    public void testCompact() {
+        BitSet bs = new BitSet(n);
+        bs.set(2, 7);
+        State s = new State(p.new MISPState(bs), vars, 10);
+        s.setLayerNumber(3);
+        s.setRelaxedValue(15);
+        State copy = s.copy();
+        copy.setLayerNumber(3);
+
+        s.compact(p.codec());
+        assertNull(s.stateRepresentation);
+        assertEquals(s.compareTo(copy), 0); // the rank is kept
+        assertEquals(Double.compare(s.relaxedValue(), 15), 0);
+
+        s.expand(p.codec());
+        assertEquals(s.stateRepresentation, copy.stateRepresentation);
+        assertEquals(s.stateRepresentation.longHashCode(), copy.stateRepresentation.longHashCode());
+        assertEquals(s, copy);
+        assertTrue(s.exactParents().isEmpty());
+    }
+
+    @Test
+    public void testEncode() {
+        BitSet bs = new BitSet(n);
+        bs.set(0, n);
+        State root = new State(p.new MISPState(bs), vars, 0);
+
+        State s = root;
+        for (int i : new int[]{4, 1, 7}) {
+            BitSet next = (BitSet) bs.clone();
+            next.clear(i);
+            s = s.getSuccessor(p.new MISPState(next), s.value() + i, i, i % 2);
+            bs = next;
+        }
+        s.setRelaxedValue(20);
+
+        State decoded = State.decode(s.encode(p.codec()), root);
+        assertNull(decoded.stateRepresentation);
+        assertEquals(decoded.layerNumber(), 3);
+        assertEquals(Double.compare(decoded.value(), s.value()), 0);
+        assertEquals(Double.compare(decoded.relaxedValue(), 20), 0);
+        assertEquals(decoded.compareTo(s), 0);
+        for (int i = 0; i < n; i++) {
+            assertEquals(decoded.isBound(i), s.isBound(i));
+            assertEquals(decoded.getVariable(i).value(), s.getVariable(i).value());
+        }
+
+        decoded.expand(p.codec());
+        assertEquals(decoded.stateRepresentation, s.stateRepresentation);
+        assertEquals(decoded, s);
+    }
+
 }
@@ -2,6 +2,8 @@ package examples;
 
 import core.Problem;
 import core.Solver;
+import dp.State;
+import dp.StateCodec;
 import heuristics.*;
 import org.junit.Test;
 
@@ -49,4 +51,28 @@ public class TestMCPRandom {
         assertEquals(Double.compare(run(generate(20), ms, ds, vs), 330), 0);
         assertEquals(Double.compare(run(generate(30), ms, ds, vs), 481), 0);
     }
+
+    @Test
+    public void testRoughUpperBound() {
+        // the bounds maintained by the successors and the merge are the ones computed from scratch
+        Problem p = generate(20);
+        StateCodec codec = p.codec();
+        State state = p.root();
+        while (!state.isFinal()) {
+            State[] successors = p.successors(state, state.freeVariables()[0]);
+            for (State successor : successors) {
+                assertEquals(p.roughUpperBound(successor), p.roughUpperBound(decoded(successor, codec)), 1e-9);
+            }
+            State merged = p.merge(successors);
+            assertEquals(p.roughUpperBound(merged), p.roughUpperBound(decoded(merged, codec)), 1e-9);
+            state = successors[successors.length - 1];
+        }
+    }
+
+    private static State decoded(State state, StateCodec codec) {
+        State copy = state.copy();
+        copy.setLayerNumber(state.layerNumber());
+        copy.stateRepresentation = codec.decode(codec.encode(state.stateRepresentation));
+        return copy;
+    }
 }
@@ -0,0 +1,73 @@
+package utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DeadlineTest {
+
+    @Test
+    public void testExpired() throws InterruptedException {
+        Deadline deadline = Deadline.after(20, TimeUnit.MILLISECONDS);
+        assertFalse(deadline.expired());
+        assertTrue(deadline.remaining(TimeUnit.MILLISECONDS) <= 20);
+
+        Thread.sleep(30);
+        assertTrue(deadline.expired());
+        assertFalse(deadline.isCancelled());
+        assertEquals(deadline.remaining(TimeUnit.MILLISECONDS), 0);
+
+        assertTrue(Deadline.after(0, TimeUnit.SECONDS).expired());
+        assertFalse(Deadline.after(Long.MAX_VALUE, TimeUnit.DAYS).expired());
+        assertFalse(Deadline.none().expired());
+        assertEquals(Deadline.none().remaining(TimeUnit.SECONDS), Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        Deadline deadline = Deadline.none();
+        Thread thread = new Thread(deadline::cancel);
+        thread.start();
+        thread.join();
+
+        assertTrue(deadline.isCancelled());
+        assertTrue(deadline.expired());
+        assertEquals(deadline.remaining(TimeUnit.SECONDS), 0);
+    }
+
+    @Test
+    public void testChild() {
+        Deadline parent = Deadline.none();
+        Deadline child = parent.child();
+        child.cancel();
+        assertTrue(child.expired());
+        assertFalse(parent.expired());
+
+        Deadline other = parent.child();
+        parent.cancel();
+        assertTrue(other.expired());
+        assertTrue(other.isCancelled());
+
+        assertTrue(Deadline.after(0, TimeUnit.SECONDS).child().expired());
+    }
+
+    @Test
+    public void testInterrupt() throws InterruptedException {
+        Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+        boolean[] expired = new boolean[1];
+        Thread thread = new Thread(() -> {
+            Thread.currentThread().interrupt();
+            expired[0] = deadline.expired();
+        });
+        thread.start();
+        thread.join();
+
+        assertTrue(expired[0]);
+        assertTrue(deadline.isCancelled()); // the other threads sharing the deadline stop as well
+        assertTrue(deadline.expired());
+    }
+}
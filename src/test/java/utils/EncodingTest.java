@@ -0,0 +1,42 @@
+package utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class EncodingTest {
+
+    @Test
+    public void testSparse() {
+        double[] values = new double[300];
+        values[0] = 1.5;
+        values[7] = -0.0;
+        values[150] = -3;
+        values[299] = Double.MAX_VALUE;
+
+        byte[] bytes = Encoding.encodeSparse(values);
+        assertTrue(bytes.length < 50);
+        assertArrayEquals(Encoding.decodeSparse(bytes, values.length), values, 0);
+        assertEquals(Double.doubleToRawLongBits(Encoding.decodeSparse(bytes, values.length)[7]),
+                Double.doubleToRawLongBits(-0.0));
+
+        assertArrayEquals(Encoding.decodeSparse(Encoding.encodeSparse(new double[10]), 10), new double[10], 0);
+    }
+
+    @Test
+    public void testVarInt() {
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        int[] values = {0, 1, 127, 128, 300, 1 << 21, Integer.MAX_VALUE};
+        for (int value : values) {
+            Encoding.writeVarInt(buffer, value);
+        }
+
+        buffer.flip();
+        for (int value : values) {
+            assertEquals(Encoding.readVarInt(buffer), value);
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+}
@@ -0,0 +1,115 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Microbenchmark of the frontier queues : compares a {@code PriorityQueue} protected by a lock,
+ * which is what the solver used before, with the {@code MultiQueue} from 1 to 64 threads.
+ * Each thread repeatedly removes a node and inserts a cutset of random size,
+ * as the workers of the solver do, so that the size of the queue stays roughly constant.
+ * Run it with {@code java -cp target/classes:target/test-classes utils.MultiQueueBenchmark [millis]}.
+ */
+public class MultiQueueBenchmark {
+
+    private static final int INITIAL_SIZE = 100000;
+    private static final int MAX_CUTSET = 2;
+
+    private interface Queue {
+        void addAll(Collection<Double> es);
+
+        Double poll();
+    }
+
+    private static class LockedQueue implements Queue {
+
+        private final PriorityQueue<Double> queue = new PriorityQueue<>();
+
+        public synchronized void addAll(Collection<Double> es) {
+            this.queue.addAll(es);
+        }
+
+        public synchronized Double poll() {
+            return this.queue.poll();
+        }
+    }
+
+    private static class RelaxedQueue implements Queue {
+
+        private final MultiQueue<Double> queue;
+
+        RelaxedQueue(int nThreads) {
+            this.queue = new MultiQueue<>(2 * nThreads, Comparator.naturalOrder(), Double::doubleValue);
+        }
+
+        public void addAll(Collection<Double> es) {
+            this.queue.addAll(es);
+        }
+
+        public Double poll() {
+            return this.queue.poll();
+        }
+    }
+
+    private static long run(Queue queue, int nThreads, long millis) throws InterruptedException {
+        Random random = new Random(12);
+        List<Double> initial = new ArrayList<>();
+        for (int i = 0; i < INITIAL_SIZE; i++) {
+            initial.add(random.nextDouble());
+        }
+        for (int i = 0; i < INITIAL_SIZE; i += 1000) {
+            queue.addAll(initial.subList(i, i + 1000));
+        }
+
+        AtomicLong ops = new AtomicLong();
+        long end = System.currentTimeMillis() + millis;
+        Thread[] threads = new Thread[nThreads];
+
+        for (int t = 0; t < nThreads; t++) {
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                List<Double> cutset = new ArrayList<>(MAX_CUTSET);
+                long count = 0;
+
+                while ((count & 0xFF) != 0 || System.currentTimeMillis() < end) {
+                    Double e = queue.poll();
+                    cutset.clear();
+                    int n = r.nextInt(MAX_CUTSET + 1) + (e == null ? 1 : 0);
+                    for (int i = 0; i < n; i++) {
+                        cutset.add((e == null ? 0 : e) + r.nextDouble());
+                    }
+                    queue.addAll(cutset);
+                    count++;
+                }
+                ops.addAndGet(count);
+            });
+            threads[t].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return ops.get() / millis;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+
+        run(new LockedQueue(), 1, millis); // warm-up
+        run(new RelaxedQueue(1), 1, millis);
+
+        System.out.println("threads\tlocked PriorityQueue (ops/ms)\tMultiQueue (ops/ms)");
+        for (int nThreads = 1; nThreads <= 64; nThreads *= 2) {
+            long locked = run(new LockedQueue(), nThreads, millis);
+            long relaxed = run(new RelaxedQueue(nThreads), nThreads, millis);
+            System.out.println(nThreads + "\t" + locked + "\t" + relaxed);
+        }
+    }
+}
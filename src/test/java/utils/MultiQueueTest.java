@@ -0,0 +1,193 @@
+package utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MultiQueueTest {
+
+    @Test
+    public void testSingleHeap() {
+        MultiQueue<Double> queue = new MultiQueue<>(1, Comparator.naturalOrder(), Double::doubleValue);
+
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        queue.add(3.0);
+        queue.addAll(Arrays.asList(5.0, 1.0, 4.0));
+
+        assertEquals(queue.size(), 4);
+        assertEquals(Double.compare(queue.maxBound(), 5), 0);
+
+        assertEquals(queue.poll(), Double.valueOf(1));
+        assertEquals(queue.poll(), Double.valueOf(3));
+        assertEquals(queue.poll(), Double.valueOf(4));
+        assertEquals(Double.compare(queue.maxBound(), 5), 0);
+        assertEquals(queue.poll(), Double.valueOf(5));
+
+        assertTrue(queue.isEmpty());
+        assertEquals(Double.compare(queue.maxBound(), -Double.MAX_VALUE), 0);
+    }
+
+    @Test
+    public void testMaxBound() {
+        MultiQueue<Double> queue = new MultiQueue<>(8, Comparator.naturalOrder(), Double::doubleValue);
+
+        for (int i = 0; i < 100; i++) {
+            queue.add((double) i);
+        }
+
+        assertEquals(Double.compare(queue.maxBound(), 99), 0);
+
+        int n = 0;
+        while (queue.poll() != null) {
+            n++;
+        }
+
+        assertEquals(n, 100);
+        assertEquals(Double.compare(queue.maxBound(), -Double.MAX_VALUE), 0);
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        MultiQueue<Double> queue = new MultiQueue<>(8, Comparator.naturalOrder(), Double::doubleValue);
+        AtomicInteger polled = new AtomicInteger();
+        int nThreads = 4, n = 10000;
+
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < n; i++) {
+                    queue.addAll(Arrays.asList((double) i, (double) -i));
+                    if (queue.poll() != null) {
+                        polled.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        while (queue.poll() != null) {
+            polled.incrementAndGet();
+        }
+
+        assertEquals(polled.get(), 2 * nThreads * n);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testReorder() {
+        MultiQueue<Double> queue = new MultiQueue<>(1, Comparator.naturalOrder(), Double::doubleValue);
+        queue.addAll(Arrays.asList(3.0, 5.0, 1.0, 4.0));
+
+        assertEquals(queue.poll(), Double.valueOf(1));
+
+        queue.reorder(Comparator.reverseOrder());
+        queue.add(2.0);
+
+        assertEquals(queue.size(), 4);
+        assertEquals(Double.compare(queue.maxBound(), 5), 0);
+
+        assertEquals(queue.poll(), Double.valueOf(5));
+        assertEquals(queue.poll(), Double.valueOf(4));
+        assertEquals(queue.poll(), Double.valueOf(3));
+        assertEquals(queue.poll(), Double.valueOf(2));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testRemoveBelow() {
+        MultiQueue<Double> queue = new MultiQueue<>(4, Comparator.naturalOrder(), Double::doubleValue);
+        for (int i = 0; i < 100; i++) {
+            queue.add((double) i);
+        }
+
+        assertEquals(queue.removeBelow(49), 50);
+        assertEquals(queue.size(), 50);
+        assertEquals(queue.removeBelow(49), 0);
+        assertEquals(Double.compare(queue.maxBound(), 99), 0);
+
+        int n = 0;
+        for (Double e = queue.poll(); e != null; e = queue.poll()) {
+            assertTrue(e > 49);
+            n++;
+        }
+        assertEquals(n, 50);
+
+        assertEquals(queue.removeBelow(Double.MAX_VALUE), 0);
+    }
+
+    @Test
+    public void testRemoveBelowInterleaved() {
+        // the greatest elements are polled while the least ones are purged, as with a best-first frontier
+        MultiQueue<Double> queue = new MultiQueue<>(1, Comparator.reverseOrder(), Double::doubleValue);
+        List<Double> expected = new ArrayList<>();
+        Random random = new Random(13);
+
+        double threshold = 0;
+        for (int i = 0; i < 20000; i++) {
+            int op = random.nextInt(10);
+            if (op < 6) {
+                double e = threshold + random.nextInt(1000);
+                queue.add(e);
+                expected.add(e);
+            } else if (op < 9) {
+                Double e = queue.poll();
+                if (expected.isEmpty()) {
+                    assertNull(e);
+                } else {
+                    Double max = Collections.max(expected);
+                    assertEquals(e, max);
+                    expected.remove(max);
+                }
+            } else {
+                threshold += random.nextInt(50);
+                double t = threshold;
+                int removed = (int) expected.stream().filter(e -> e <= t).count();
+                expected.removeIf(e -> e <= t);
+                assertEquals(queue.removeBelow(threshold), removed);
+            }
+
+            assertEquals(queue.size(), expected.size());
+            double max = expected.isEmpty() ? -Double.MAX_VALUE : Collections.max(expected);
+            assertEquals(Double.compare(queue.maxBound(), max), 0);
+        }
+
+        List<Double> elements = queue.elements();
+        Collections.sort(elements);
+        Collections.sort(expected);
+        assertEquals(elements, expected);
+    }
+
+    @Test
+    public void testRemoveLeast() {
+        // many ties : exactly half of the elements are removed, the least ones
+        MultiQueue<Double> queue = new MultiQueue<>(4, Comparator.naturalOrder(), Double::doubleValue);
+        for (int i = 0; i < 100; i++) {
+            queue.add((double) (i % 3));
+        }
+
+        List<Double> removed = new ArrayList<>();
+        assertEquals(queue.removeLeast(50, removed::add), 50);
+        assertEquals(removed.size(), 50);
+        assertEquals(queue.size(), 50);
+        double max = removed.stream().mapToDouble(Double::doubleValue).max().getAsDouble();
+        for (Double e = queue.poll(); e != null; e = queue.poll()) {
+            assertTrue(e >= max);
+        }
+
+        assertEquals(queue.removeLeast(10, removed::add), 0);
+    }
+
+}
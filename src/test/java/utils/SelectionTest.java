@@ -0,0 +1,49 @@
+package utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SelectionTest {
+
+    @Test
+    public void testLeast() {
+        Random random = new Random(12);
+
+        for (int n = 1; n < 50; n++) {
+            double[] keys = new double[n + 5]; // keys after n should be ignored
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = random.nextInt(10) - (i >= n ? 100 : 0);
+            }
+
+            double[] sorted = Arrays.copyOf(keys, n);
+            Arrays.sort(sorted);
+
+            for (int number = 0; number <= n; number++) {
+                int[] ids = Selection.least(keys, n, number);
+                assertEquals(ids.length, number);
+
+                double[] selected = new double[number];
+                boolean[] seen = new boolean[n];
+                for (int i = 0; i < number; i++) {
+                    assertTrue(ids[i] < n && !seen[ids[i]]);
+                    seen[ids[i]] = true;
+                    selected[i] = keys[ids[i]];
+                }
+                Arrays.sort(selected);
+
+                assertTrue(Arrays.equals(selected, Arrays.copyOf(sorted, number)));
+            }
+        }
+    }
+
+    @Test
+    public void testFirst() {
+        assertTrue(Arrays.equals(Selection.first(3), new int[]{0, 1, 2}));
+        assertEquals(Selection.first(0).length, 0);
+    }
+}